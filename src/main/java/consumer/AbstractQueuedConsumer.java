@@ -1,13 +1,17 @@
 package consumer;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 
 import consumer.lifecycle.StateCheckDelegate;
 import org.slf4j.Logger;
 import consumer.queue.SQueue;
 import consumer.util.Util;
+import consumer.util.VirtualThreads;
 
 /**
  * {@link Consumer}骨架实现，提供基本的生命周期以及{@link RuntimeException}处理.
@@ -23,12 +27,50 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
     protected UncaughtExceptionHandler handler;
 
     protected final int queueSize;
+    /**
+     * 每次唤醒后最多连续消费的任务数.
+     */
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+    /**
+     * 微批次的最大大小，为0表示不开启微批次消费，参见{@link #setMicroBatch(int, long, TimeUnit)}.
+     */
+    protected int microBatchSize = 0;
+    /**
+     * 微批次中第一个任务最多等待的时间(纳秒).
+     */
+    protected long maxLingerNanos = 0;
+    /**
+     * 是否统计任务的平均处理时间，参见{@link #getAverageServiceNanos()}.
+     */
+    private volatile boolean trackServiceTime = false;
+    /**
+     * 任务处理时间的指数移动平均(纳秒)，多个消费线程并发更新时允许丢失部分样本.
+     */
+    private volatile long avgServiceNanos = 0;
+    /**
+     * 是否使用虚拟线程作为消费线程，参见{@link #setVirtualThreads(boolean)}.
+     */
+    private boolean virtualThreads = false;
+    /**
+     * 过期任务的处理者，为null表示不检查截止时间，参见{@link #setExpiryHandler(java.util.function.Consumer)}.
+     */
+    private java.util.function.Consumer<? super T> expiryHandler;
+    private final LongAdder expiredCount = new LongAdder();
     private volatile State state = State.INIT;
 
     private volatile boolean consumeLeft = false;
 
     private CompletableFuture<Void> future;
     private final Logger log = Util.getLogger(this.getClass());
+    /**
+     * 批量获取任务时使用的接收者，避免每次drain都创建新的对象.
+     */
+    private final java.util.function.Consumer<T> sink = this::doConsume;
+
+    /**
+     * 默认的批量消费大小.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
     /**
      * 默认的线程工厂，将线程名设置为{@link #getThreadName(Thread)}.
      */
@@ -37,6 +79,14 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
         t.setName(getThreadName(t));
         return t;
     };
+    /**
+     * 虚拟线程模式下使用的线程工厂.
+     */
+    private final ThreadFactory virtualThreadFactory = r -> {
+        Thread t = VirtualThreads.factory().newThread(r);
+        t.setName(getThreadName(t));
+        return t;
+    };
 
     public AbstractQueuedConsumer(int queueSize) {
         this.queueSize = queueSize;
@@ -55,7 +105,7 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
         delegate.checkStart(this);
         this.jobQueue = newQueue();
         this.state = State.RUNNING;
-        this.executor = startExecutor(defaultThreadFactory);
+        this.executor = startExecutor(virtualThreads ? virtualThreadFactory : defaultThreadFactory);
         return true;
     }
 
@@ -144,24 +194,150 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
     public final void run() {
         T task;
         try {
+            if (microBatchSize > 0) {
+                runMicroBatch();
+                return;
+            }
             while (shouldConsume()) {
                 task = getTask();
                 if (task != null) {
                     doConsume(task);
+                    if (batchSize > 1) {
+                        drainTasks(sink, batchSize - 1);
+                    }
+                } else if (retire()) {
+                    return;
                 }
             }
             if (consumeLeft) {
-                while ((task = getLeftTask()) != null) {
-                    doConsume(task);
-                }
+                while (drainTasks(sink, batchSize) > 0) ;
             }
         } catch (InterruptedException e) {
             if (log != null) {
                 log.error("The thread was interrupted when the task was fetched, exiting...", e);
             }
+        } finally {
+            //消费线程因空闲而退出时消费者仍在运行，不能完成future
+            if (!shouldConsume() && future != null && !future.isDone()) {
+                future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 微批次模式下的消费循环.任务被收集到一个复用的缓冲区中，当缓冲区达到{@link #microBatchSize}或者其中第一个任务
+     * 等待超过{@link #maxLingerNanos}时，调用{@link #consumeBatch(List)}.
+     * <p>等待超时由{@link #getTask(long)}完成，所以不需要额外的定时线程.</p>
+     */
+    private void runMicroBatch() throws InterruptedException {
+        final List<T> batch = new ArrayList<>(microBatchSize);
+        final java.util.function.Consumer<T> collector = batch::add;
+        long deadline = 0;
+        T task;
+        try {
+            while (shouldConsume()) {
+                if (batch.isEmpty()) {
+                    task = getTask();
+                } else {
+                    task = getTask(deadline - System.nanoTime());
+                }
+                if (task == null && batch.isEmpty() && retire()) {
+                    return;
+                }
+                if (task != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + maxLingerNanos;
+                    }
+                    batch.add(task);
+                    if (batch.size() < microBatchSize) {
+                        drainTasks(collector, microBatchSize - batch.size());
+                    }
+                }
+                if (batch.size() >= microBatchSize || (!batch.isEmpty() && System.nanoTime() - deadline >= 0)) {
+                    flush(batch);
+                }
+            }
+            if (consumeLeft) {
+                while (drainTasks(collector, microBatchSize - batch.size()) > 0) {
+                    if (batch.size() >= microBatchSize) {
+                        flush(batch);
+                    }
+                }
+            }
+        } finally {
+            //已经出队的任务无论如何都要消费掉
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
         }
-        if (future != null && !future.isDone()) {
-            future.complete(null);
+    }
+
+    /**
+     * 消费并清空微批次缓冲区，捕获{@link RuntimeException}.
+     */
+    private void flush(List<T> batch) {
+        final int total = batch.size();
+        if (expiryHandler != null) {
+            removeExpired(batch);
+        }
+        final long start = (trackServiceTime ? System.nanoTime() : 0L);
+        try {
+            if (!batch.isEmpty()) {
+                consumeBatch(batch);
+            }
+        } catch (RuntimeException e) {
+            handleUncheckedException(e);
+        } finally {
+            if (trackServiceTime && !batch.isEmpty()) {
+                recordServiceTime(System.nanoTime() - start, batch.size());
+            }
+            afterConsume(total);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 从微批次中移除已经过期的任务，其余任务保持原有顺序.
+     */
+    private void removeExpired(List<T> batch) {
+        final long now = System.nanoTime();
+        int kept = 0;
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            final T task = batch.get(i);
+            if (!expire(task, now)) {
+                batch.set(kept++, task);
+            }
+        }
+        batch.subList(kept, batch.size()).clear();
+    }
+
+    /**
+     * 如果任务实现了{@link Deadlined}并且已经超过了截止时间，那么计数并交给{@link #expiryHandler}.
+     *
+     * @return true, 如果任务已经过期
+     */
+    private boolean expire(T task, long now) {
+        if (!(task instanceof Deadlined) || now - ((Deadlined) task).getDeadline() < 0) {
+            return false;
+        }
+        expiredCount.increment();
+        try {
+            expiryHandler.accept(task);
+        } catch (RuntimeException e) {
+            handleUncheckedException(e);
+        }
+        return true;
+    }
+
+    /**
+     * 微批次消费，默认逐个调用{@link #consume(Object)}，子类可覆盖此方法以实现批量处理.
+     * <p>注意: 参数列表会被复用，实现不应在此方法返回后继续持有它.</p>
+     *
+     * @param tasks 本批次的任务
+     */
+    protected void consumeBatch(List<T> tasks) {
+        for (int i = 0, size = tasks.size(); i < size; i++) {
+            consume(tasks.get(i));
         }
     }
 
@@ -169,11 +345,39 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
      * consume()辅助方法，捕获{@link RuntimeException}.
      */
     private void doConsume(T task) {
+        if (expiryHandler != null && expire(task, System.nanoTime())) {
+            afterConsume(1);
+            return;
+        }
+        final long start = (trackServiceTime ? System.nanoTime() : 0L);
         try {
             consume(task);
         } catch (RuntimeException e) {
             handleUncheckedException(e);
         }
+        if (trackServiceTime) {
+            recordServiceTime(System.nanoTime() - start, 1);
+        }
+        afterConsume(1);
+    }
+
+    /**
+     * 当前消费线程每处理完count个任务(无论是否抛出了异常)之后被调用，任务按出队的顺序被处理.
+     * 子类可覆盖此方法以确认任务已被处理，默认空实现.
+     *
+     * @param count 处理完的任务数
+     */
+    protected void afterConsume(int count) {
+    }
+
+    /**
+     * 更新任务平均处理时间.
+     *
+     * @param nanos 处理count个任务所花费的时间
+     */
+    private void recordServiceTime(long nanos, int count) {
+        long avg = avgServiceNanos;
+        avgServiceNanos = avg - (avg >> 3) + ((nanos / count) >> 3);
     }
 
     /**
@@ -185,12 +389,48 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
     protected abstract T getTask() throws InterruptedException;
 
     /**
-     * 得到队列中剩余的任务，当terminate()方法被调用时执行.
+     * 从工作队列中得到任务，最多等待给定的时间，由子类实现，此方法在微批次模式下被run()调用.
      *
-     * @return <T>
+     * @param nanos 最多等待的纳秒数，如果不是正数，那么不进行等待
+     * @return <T> 如果超时或被唤醒时仍没有任务，那么返回null
+     * @throws InterruptedException 如果获取任务时被中断
      */
-    private T getLeftTask() {
-        return jobQueue.poll();
+    protected abstract T getTask(long nanos) throws InterruptedException;
+
+    /**
+     * 当{@link #getTask()}返回null时被run()调用，决定当前消费线程是否退出，子类可覆盖此方法以实现消费线程的弹性伸缩.
+     * <p>默认返回false.</p>
+     *
+     * @return true, 如果当前消费线程应退出
+     */
+    protected boolean retire() {
+        return false;
+    }
+
+    /**
+     * 批量获取任务并交给sink消费，此方法将会在{@link #getTask()}成功之后被run()调用，以及在terminate()之后用于
+     * 消费队列中剩余的任务.
+     * <p>默认直接调用{@link SQueue#drain(java.util.function.Consumer, int)}，如果队列不是线程安全的，子类需覆盖此方法.</p>
+     *
+     * @param sink  任务的接收者
+     * @param limit 最多获取的任务数
+     * @return 实际获取的任务数
+     */
+    protected int drainTasks(java.util.function.Consumer<T> sink, int limit) {
+        return jobQueue.drain(sink, limit);
+    }
+
+    /**
+     * 设置每次唤醒后最多连续消费的任务数，为1时等同于逐个消费.
+     *
+     * @param batchSize 必须为正数
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The param batchSize must be positive.");
+        }
+        delegate.checkStart(this);
+        this.batchSize = batchSize;
     }
 
     /**
@@ -200,6 +440,85 @@ public abstract class AbstractQueuedConsumer<T> implements Consumer<T>, Runnable
         return (this.state == State.RUNNING);
     }
 
+    /**
+     * 开启微批次消费: 任务被攒成批次交给{@link #consumeBatch(List)}，当批次达到maxBatchSize或者
+     * 批次中第一个任务等待超过maxLinger时(以先到者为准)触发.
+     *
+     * @param maxBatchSize 批次的最大大小，必须为正数
+     * @param maxLinger    批次最多等待的时间
+     * @param unit         maxLinger的单位
+     */
+    public void setMicroBatch(int maxBatchSize, long maxLinger, TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The param maxBatchSize must be positive.");
+        }
+        if (maxLinger < 0) {
+            throw new IllegalArgumentException("The param maxLinger can't be negative.");
+        }
+        Objects.requireNonNull(unit);
+        delegate.checkStart(this);
+        this.microBatchSize = maxBatchSize;
+        this.maxLingerNanos = unit.toNanos(maxLinger);
+    }
+
+    /**
+     * 使用虚拟线程(JDK 21+)作为消费线程，适用于I/O密集型的消费逻辑.
+     * <p>消费线程的等待由{@link java.util.concurrent.locks.LockSupport}或{@link java.util.concurrent.locks.Lock}
+     * 完成，不会使虚拟线程固定(pin)在载体线程上，但{@link #consume(Object)}的实现应避免在阻塞操作时持有synchronized锁.</p>
+     *
+     * @throws UnsupportedOperationException 如果当前JDK不支持虚拟线程
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later.");
+        }
+        delegate.checkStart(this);
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 开启/关闭任务处理时间的统计，开启后每个任务需额外调用两次{@link System#nanoTime()}.可在运行时调用.
+     */
+    public void setServiceTimeTracking(boolean trackServiceTime) {
+        this.trackServiceTime = trackServiceTime;
+    }
+
+    /**
+     * 得到任务平均处理时间的估计(纳秒)，只有开启了{@link #setServiceTimeTracking(boolean)}才有意义.
+     */
+    public long getAverageServiceNanos() {
+        return avgServiceNanos;
+    }
+
+    /**
+     * 开启过期检查: 实现了{@link Deadlined}的任务在被处理之前检查截止时间，已经过期的任务不再交给
+     * {@link #consume(Object)}，而是交给handler并计数，参见{@link #getExpiredCount()}.
+     * 过载时这样可以把处理能力留给仍然有意义的任务，配合{@link consumer.queue.locked.EdfQueue}效果更好.
+     * <p>开启后每个任务(微批次模式下每个批次)需额外调用一次{@link System#nanoTime()}.</p>
+     *
+     * @param handler 过期任务的处理者，比如通知调用者超时，在消费线程中被调用
+     */
+    public void setExpiryHandler(java.util.function.Consumer<? super T> handler) {
+        Objects.requireNonNull(handler);
+        delegate.checkStart(this);
+        this.expiryHandler = handler;
+    }
+
+    /**
+     * 得到因过期而被跳过的任务数.
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * 得到当前队列中积压的任务数.
+     */
+    public int getPendingCount() {
+        SQueue<T> queue = jobQueue;
+        return (queue == null ? 0 : queue.size());
+    }
+
     @Override
     public State getState() {
         return state;
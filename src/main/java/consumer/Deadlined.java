@@ -0,0 +1,17 @@
+package consumer;
+
+/**
+ * 带有截止时间的任务.超过截止时间的任务对调用者已经没有意义，开启了
+ * {@link AbstractQueuedConsumer#setExpiryHandler(java.util.function.Consumer)}的消费者在处理之前将其跳过，
+ * {@link consumer.queue.locked.EdfQueue}按截止时间排列任务.
+ *
+ * @author skywalker
+ */
+public interface Deadlined {
+
+    /**
+     * 得到截止时间，以{@link System#nanoTime()}为基准，同一任务的截止时间必须保持不变.
+     */
+    long getDeadline();
+
+}
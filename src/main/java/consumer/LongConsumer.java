@@ -0,0 +1,38 @@
+package consumer;
+
+import consumer.lifecycle.LifeCycle;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+
+/**
+ * long任务的消费者，语义同{@link Consumer}，提交和消费均不装箱.
+ *
+ * @author skywalker
+ */
+public interface LongConsumer extends LifeCycle {
+
+    /**
+     * 任务提交.
+     *
+     * @return true, 如果提交成功
+     */
+    boolean submit(long task);
+
+    /**
+     * 任务提交，如果队列已满那么一直等待.
+     *
+     * @throws InterruptedException 如果在等待时被中断
+     */
+    void submitSync(long task) throws InterruptedException;
+
+    /**
+     * 任务消费.
+     */
+    void consume(long task);
+
+    /**
+     * 设置{@link RuntimeException}处理器.
+     */
+    void setUncaughtExceptionHandler(UncaughtExceptionHandler handler);
+
+}
@@ -1,5 +1,7 @@
 package consumer;
 
+import java.util.List;
+
 /**
  * 可以提交.
  *
@@ -23,4 +25,41 @@ public interface Submitable<T> {
      */
     void submitSync(T task) throws InterruptedException;
 
+    /**
+     * 批量提交tasks中[from, to)区间内的任务，一次性申请队列空间，并且对于整批任务最多只进行一次唤醒.
+     * <p>如果队列空间不足，那么只提交前面能够容纳的部分.</p>
+     * <p>默认实现逐个调用{@link #submit(Object)}，在第一个提交失败的任务处停止，不能一次性申请空间，
+     * 所以每个任务都可能唤醒一次.</p>
+     *
+     * @param tasks 任务/消息，不能包含null
+     * @param from  起始下标(包含)
+     * @param to    结束下标(不包含)
+     * @return 实际提交成功的任务数
+     * @throws IndexOutOfBoundsException 如果区间不合法
+     */
+    default int submitAll(T[] tasks, int from, int to) {
+        if (from < 0 || to > tasks.length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + tasks.length);
+        }
+        int count = 0;
+        for (int i = from; i < to && submit(tasks[i]); i++) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * 批量提交tasks中[from, to)区间内的任务，语义同{@link #submitAll(Object[], int, int)}.
+     */
+    default int submitAll(List<T> tasks, int from, int to) {
+        if (from < 0 || to > tasks.size() || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + tasks.size());
+        }
+        int count = 0;
+        for (int i = from; i < to && submit(tasks.get(i)); i++) {
+            ++count;
+        }
+        return count;
+    }
+
 }
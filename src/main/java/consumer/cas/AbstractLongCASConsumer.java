@@ -0,0 +1,270 @@
+package consumer.cas;
+
+import consumer.AbstractQueuedConsumer;
+import consumer.LongConsumer;
+import consumer.lifecycle.StateCheckDelegate;
+import consumer.queue.primitive.LongSQueue;
+import consumer.queue.primitive.MpmcLongQueue;
+import consumer.queue.primitive.MpscLongQueue;
+import consumer.queue.primitive.SpscLongQueue;
+import consumer.util.Util;
+import consumer.util.WaiterStack;
+import org.slf4j.Logger;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import static consumer.util.UnsafeAccess.UNSAFE;
+
+/**
+ * {@link LongConsumer}骨架实现，基于{@link LongSQueue}，任务以long[]存放，不产生装箱对象.
+ * <p>队列按生产者/消费线程的数量选择{@link SpscLongQueue}、{@link MpscLongQueue}或{@link MpmcLongQueue}.
+ * 消费线程与生产者的等待均采用与{@link consumer.cas.strategy.ParkStrategy}相同的"先发布再检查"协议.</p>
+ *
+ * @author skywalker
+ */
+public abstract class AbstractLongCASConsumer implements LongConsumer, Runnable {
+
+    protected LongSQueue jobQueue;
+    protected ExecutorService executor;
+    protected final StateCheckDelegate delegate;
+    protected UncaughtExceptionHandler handler;
+
+    protected final int queueSize;
+    /**
+     * 消费线程的数量.
+     */
+    protected final int threads;
+    /**
+     * 是否有多个生产者.
+     */
+    protected final boolean multiProducer;
+    /**
+     * 每次唤醒后最多连续消费的任务数.
+     */
+    protected int batchSize = AbstractQueuedConsumer.DEFAULT_BATCH_SIZE;
+
+    /**
+     * 等待任务的消费线程.
+     */
+    private final WaiterStack consumers = new WaiterStack();
+    /**
+     * 等待队列空间的生产者.
+     */
+    private final WaiterStack producers = new WaiterStack();
+    private volatile State state = State.INIT;
+    private volatile boolean consumeLeft = false;
+    private volatile CompletableFuture<Void> future;
+
+    private final Logger log = Util.getLogger(this.getClass());
+    private final java.util.function.LongConsumer sink = this::doConsume;
+
+    public AbstractLongCASConsumer(int queueSize, int threads, boolean multiProducer) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The param threads must be positive.");
+        }
+        this.queueSize = queueSize;
+        this.threads = threads;
+        this.multiProducer = multiProducer;
+        this.delegate = StateCheckDelegate.getInstance();
+    }
+
+    /**
+     * 创建队列，子类可覆盖.
+     */
+    protected LongSQueue newQueue() {
+        if (threads > 1) {
+            return new MpmcLongQueue(queueSize);
+        }
+        return (multiProducer ? new MpscLongQueue(queueSize) : new SpscLongQueue(queueSize));
+    }
+
+    @Override
+    public final boolean start() {
+        delegate.checkStart(this);
+        this.jobQueue = newQueue();
+        this.state = State.RUNNING;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setName(getThreadName(t));
+            return t;
+        });
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this);
+        }
+        return true;
+    }
+
+    /**
+     * 得到线程名称，默认使用类名-线程ID的格式.
+     */
+    protected String getThreadName(Thread t) {
+        return (this.getClass().getSimpleName() + "-" + t.getId());
+    }
+
+    @Override
+    public final boolean submit(long task) {
+        boolean result = jobQueue.offer(task);
+        if (result) {
+            signal(consumers, false);
+        }
+        return result;
+    }
+
+    /**
+     * @throws IllegalStateException 如果消费者没有在运行或者在等待期间被终结，此时任务没有被提交
+     */
+    @Override
+    public final void submitSync(long task) throws InterruptedException {
+        while (!submit(task)) {
+            delegate.checkRunning(this);
+            final WaiterStack.Waiter waiter = producers.push();
+            if (submit(task)) {
+                producers.cancel(waiter);
+                return;
+            }
+            if (state != State.RUNNING) {
+                producers.cancel(waiter);
+                delegate.checkRunning(this);
+            }
+            while (waiter.isWaiting() && state == State.RUNNING) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    producers.cancel(waiter);
+                    throw new InterruptedException();
+                }
+            }
+            producers.cancel(waiter);
+        }
+    }
+
+    /**
+     * 如果有等待者，那么唤醒其中一个或全部.
+     * <p>队列的发布与读取栈顶之间需要一个StoreLoad屏障，与等待者入栈时的CAS配对.</p>
+     */
+    private static void signal(WaiterStack waiters, boolean all) {
+        UNSAFE.fullFence();
+        if (waiters.isEmpty()) {
+            return;
+        }
+        if (all) {
+            waiters.signalAll();
+        } else {
+            waiters.signalOne();
+        }
+    }
+
+    @Override
+    public final void run() {
+        try {
+            while (state == State.RUNNING) {
+                if (jobQueue.drain(sink, batchSize) > 0) {
+                    signal(producers, true);
+                } else {
+                    await();
+                }
+            }
+            if (consumeLeft) {
+                while (jobQueue.drain(sink, batchSize) > 0) ;
+            }
+        } finally {
+            CompletableFuture<Void> future = this.future;
+            if (future != null && !future.isDone()) {
+                future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 发布等待者，再次检查队列，仍然为空时park.
+     */
+    private void await() {
+        final WaiterStack.Waiter waiter = consumers.push();
+        if (jobQueue.isEmpty() && state == State.RUNNING) {
+            //不响应中断，terminateNow()通过改变状态并唤醒所有等待者来结束消费线程
+            while (waiter.isWaiting() && state == State.RUNNING) {
+                LockSupport.park(this);
+            }
+        }
+        consumers.cancel(waiter);
+    }
+
+    private void doConsume(long task) {
+        try {
+            consume(task);
+        } catch (RuntimeException e) {
+            handleUncheckedException(e);
+        }
+    }
+
+    /**
+     * 处理{@link RuntimeException}，语义同{@link AbstractQueuedConsumer}.
+     */
+    protected void handleUncheckedException(RuntimeException e) {
+        if (handler != null) {
+            handler.uncaughtException(Thread.currentThread(), e);
+        } else if (log != null) {
+            log.error("A RuntimeException is thrown when calling the 'consume(long task)' method.", e);
+        }
+    }
+
+    @Override
+    public void setUncaughtExceptionHandler(UncaughtExceptionHandler handler) {
+        Objects.requireNonNull(handler);
+        this.handler = handler;
+    }
+
+    /**
+     * 设置每次唤醒后最多连续消费的任务数.
+     *
+     * @param batchSize 必须为正数
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The param batchSize must be positive.");
+        }
+        delegate.checkStart(this);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 得到当前队列中积压的任务数.
+     */
+    public int getPendingCount() {
+        LongSQueue queue = jobQueue;
+        return (queue == null ? 0 : queue.size());
+    }
+
+    @Override
+    public final Future<Void> terminate() {
+        return terminate(true);
+    }
+
+    @Override
+    public final Future<Void> terminateNow() {
+        return terminate(false);
+    }
+
+    private Future<Void> terminate(boolean consumeLeft) {
+        delegate.checkTerminated(this);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        this.future = future;
+        this.consumeLeft = consumeLeft;
+        this.state = State.TERMINATED;
+        executor.shutdown();
+        consumers.signalAll();
+        producers.signalAll();
+        return future;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+}
@@ -4,6 +4,7 @@ import consumer.MultiThreadsConsumer;
 import consumer.queue.SQueue;
 import consumer.queue.cas.MpmcBasedQueue;
 import consumer.queue.cas.MpscBasedQueue;
+import consumer.queue.cas.MpscChunkedBasedQueue;
 
 /**
  * {@link MultiThreadsConsumer}实现，暂且只提供给予CAS的多线程消费者实现.
@@ -17,8 +18,17 @@ public abstract class AbstractMPCASConsumer<T> extends AbstractSPCASConsumer<T>
     }
 
     @Override
-    protected final SQueue<T> newQueue() {
-        return (threads > 1 ? new MpmcBasedQueue<T>(queueSize) : new MpscBasedQueue<T>(queueSize));
+    protected final boolean isMultiProducer() {
+        return true;
+    }
+
+    @Override
+    protected final SQueue<T> newQueue(boolean multiConsumer) {
+        if (multiConsumer) {
+            return new MpmcBasedQueue<T>(queueSize);
+        }
+        return (initialCapacity > 0 ? new MpscChunkedBasedQueue<T>(initialCapacity, queueSize) :
+                new MpscBasedQueue<T>(queueSize));
     }
 
 }
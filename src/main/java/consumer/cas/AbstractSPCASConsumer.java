@@ -1,29 +1,150 @@
 package consumer.cas;
 
 import consumer.AbstractQueuedConsumer;
-import consumer.cas.strategy.BlockStrategy;
+import consumer.cas.backpressure.BackpressurePolicy;
+import consumer.cas.backpressure.ParkPolicy;
+import consumer.cas.strategy.ParkStrategy;
 import consumer.cas.strategy.RetryStrategy;
+import consumer.codec.TaskCodec;
+import consumer.journal.Journal;
+import consumer.journal.JournalingQueue;
+import consumer.queue.PriorityLanesQueue;
+import consumer.queue.QueueFactory;
 import consumer.queue.SQueue;
+import consumer.queue.Weigher;
+import consumer.queue.WeightedQueue;
 import consumer.queue.cas.SpmcBasedQueue;
+import consumer.queue.cas.SpscChunkedBasedQueue;
 import consumer.queue.cas.SpscBasedQueue;
+import consumer.queue.cas.StealableQueue;
+import consumer.queue.spill.SpillingQueue;
+import consumer.timer.Timeout;
+import consumer.timer.TimingWheel;
+import consumer.util.RangeSupplier;
 
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * {@link AbstractQueuedConsumer}骨架实现，基于无锁队列实现，子类可指定消费者线程数，
  * 如果有一个消费线程，那么使用{@link org.jctools.queues.SpscArrayQueue}，否则使用
  * {@link org.jctools.queues.SpmcArrayQueue}.
  * <br>
- * 默认采用阻塞的等待策略.
+ * 默认采用阻塞的等待策略({@link ParkStrategy})，队列已满时{@link #submitSync(Object)}默认采用{@link ParkPolicy}.
  *
  * @author skywalker
  */
 public abstract class AbstractSPCASConsumer<T> extends AbstractQueuedConsumer<T> {
 
-    private RetryStrategy<T> retryStrategy = new BlockStrategy<T>();
+    /**
+     * {@link TimerView#poll()}返回的标记，表示应重新计算等待时间，不会被返回给run().
+     */
+    private static final Object WAKEUP = new Object();
+
+    private RetryStrategy<T> retryStrategy = new ParkStrategy<T>();
+    private BackpressurePolicy<T> backpressurePolicy = new ParkPolicy<T>();
+    private final BackpressurePolicy.Target<T> target = new Target() {
+        @Override
+        public boolean offer(T task) {
+            return submit(task);
+        }
+    };
+    private final BackpressurePolicy.Target<T> pinnedTarget = new Target() {
+        @Override
+        public boolean offer(T task) {
+            return submitPinned(task);
+        }
+    };
+
+    /**
+     * 按key提交的任务所使用的队列，只有开启了工作窃取时才与{@link #jobQueue}不同.
+     */
+    private SQueue<T> pinnedQueue;
+    /**
+     * 工作窃取模式下，空闲的消费线程扫描其它消费者的间隔，为0表示不开启工作窃取.
+     */
+    private long stealIntervalNanos = 0;
+    /**
+     * 可以从中窃取任务的消费者(包括自身).
+     */
+    private volatile List<AbstractSPCASConsumer<T>> siblings;
+    /**
+     * 窃取到的除第一个之外的任务，由窃取它们的消费线程直接消费，而不是放入自己的队列，
+     * 否则单生产者队列将出现第二个生产者(消费线程自身).
+     */
+    private final ThreadLocal<Stolen<T>> stolenTasks = ThreadLocal.withInitial(Stolen::new);
+
+    /**
+     * 弹性模式下消费线程数的上下限，maxThreads为0表示不开启弹性伸缩，参见{@link #setElasticThreads}.
+     */
+    private int minThreads = 0;
+    private int maxThreads = 0;
+    private int scaleUpThreshold;
+    private long keepAliveNanos;
+    /**
+     * 弹性模式下当前的消费线程数.
+     */
+    private final AtomicInteger workers = new AtomicInteger();
+    /**
+     * 上一次检查时队列积压是否超过了阈值，多个消费线程之间允许存在竞争.
+     */
+    private boolean overloaded = false;
+    private ExecutorService elasticExecutor;
+    /**
+     * 可增长队列的初始容量，为0表示使用固定容量的队列，参见{@link #setGrowable(int)}.
+     */
+    protected int initialCapacity = 0;
+    /**
+     * 磁盘溢出层的配置，spillCodec为null表示不开启，参见{@link #setSpill(File, int, TaskCodec)}.
+     */
+    private File spillDirectory;
+    private int spillSegmentSize;
+    private TaskCodec<T> spillCodec;
+    private final List<SpillingQueue<T>> spillingQueues = new ArrayList<>(2);
+    /**
+     * 预写日志的配置，journalCodec为null表示不开启，参见{@link #setJournal}.
+     */
+    private File journalDirectory;
+    private int journalSegmentSize;
+    private TaskCodec<T> journalCodec;
+    private long journalFlushNanos;
+    private int journalFlushBytes;
+    private Journal<T> journal;
+    /**
+     * 替换默认队列实现的工厂，参见{@link #setQueueFactory(QueueFactory)}.
+     */
+    private QueueFactory<T> queueFactory;
+    /**
+     * 按权重限制队列容量，weigher为null表示不开启，参见{@link #setWeightBudget(long, Weigher)}.
+     */
+    private Weigher<? super T> weigher;
+    private long weightBudget;
+    /**
+     * 优先级通道的数量，为0表示不开启，laneWeights为null表示严格优先级，参见{@link #setPriorityLanes(int)}.
+     */
+    private int priorityLanes = 0;
+    private int[] laneWeights;
+    private PriorityLanesQueue<T> lanesQueue;
+    private BackpressurePolicy.Target<T>[] laneTargets;
+    /**
+     * 延迟提交的任务所在的时间轮，启动时创建，参见{@link #setTimer(long, TimeUnit, int)}.
+     */
+    private long timerTickNanos = TimeUnit.MILLISECONDS.toNanos(1);
+    private int timerTicks = 512;
+    private TimingWheel<T> timers;
+    private final SQueue<T> timerView = new TimerView();
 
     /**
      * 消费线程的数量.
@@ -35,9 +156,99 @@ public abstract class AbstractSPCASConsumer<T> extends AbstractQueuedConsumer<T>
         this.threads = threads;
     }
 
+    /**
+     * 开启工作窃取时使用{@link StealableQueue}，其中可被窃取的部分必须支持多消费者.
+     * <p>开启弹性伸缩时按最大线程数选择队列.</p>
+     */
     @Override
-    protected SQueue<T> newQueue() {
-        return (threads > 1 ? new SpmcBasedQueue<T>(queueSize) : new SpscBasedQueue<T>(queueSize));
+    protected final SQueue<T> newQueue() {
+        this.timers = new TimingWheel<>(timerTickNanos, timerTicks);
+        final int threads = (maxThreads > 0 ? maxThreads : this.threads);
+        final boolean multiConsumer = (threads > 1 || backpressurePolicy.requiresConcurrentPoll());
+        if (journalCodec != null) {
+            this.journal = new Journal<>(journalDirectory, journalSegmentSize, journalCodec, journalFlushNanos,
+                    TimeUnit.NANOSECONDS, journalFlushBytes, queueSize);
+            SQueue<T> queue = weighIfNecessary(new JournalingQueue<>(journal, rawQueue(multiConsumer)));
+            this.pinnedQueue = queue;
+            return queue;
+        }
+        if (priorityLanes > 0) {
+            return newLanesQueue(multiConsumer);
+        }
+        SQueue<T> queue = spillIfNecessary(createQueue(multiConsumer || stealIntervalNanos > 0));
+        if (stealIntervalNanos > 0) {
+            StealableQueue<T> stealable = new StealableQueue<>(queue, spillIfNecessary(createQueue(multiConsumer)));
+            this.pinnedQueue = stealable.pinned();
+            return stealable;
+        }
+        this.pinnedQueue = queue;
+        return queue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SQueue<T> newLanesQueue(boolean multiConsumer) {
+        final SQueue<T>[] queues = (SQueue<T>[]) new SQueue[priorityLanes];
+        final BackpressurePolicy.Target<T>[] targets = (BackpressurePolicy.Target<T>[])
+                new BackpressurePolicy.Target[priorityLanes];
+        for (int i = 0; i < priorityLanes; i++) {
+            queues[i] = createQueue(multiConsumer);
+            final int priority = i;
+            targets[i] = new Target() {
+                @Override
+                public boolean offer(T task) {
+                    return submitWithPriority(task, priority);
+                }
+            };
+        }
+        this.lanesQueue = new PriorityLanesQueue<>(queues, laneWeights);
+        this.laneTargets = targets;
+        this.pinnedQueue = lanesQueue;
+        return lanesQueue;
+    }
+
+    private SQueue<T> createQueue(boolean multiConsumer) {
+        return weighIfNecessary(rawQueue(multiConsumer));
+    }
+
+    private SQueue<T> weighIfNecessary(SQueue<T> queue) {
+        return (weigher == null ? queue : new WeightedQueue<>(queue, weigher, weightBudget));
+    }
+
+    private SQueue<T> rawQueue(boolean multiConsumer) {
+        if (queueFactory != null) {
+            return Objects.requireNonNull(queueFactory.newQueue(queueSize, isMultiProducer(), multiConsumer));
+        }
+        return newQueue(multiConsumer);
+    }
+
+    /**
+     * 队列是否需要支持多个生产者，默认返回false.
+     */
+    protected boolean isMultiProducer() {
+        return false;
+    }
+
+    /**
+     * 创建队列.
+     *
+     * @param multiConsumer 队列是否需要支持多个消费者，除了多个消费线程之外，工作窃取以及某些
+     *                      {@link BackpressurePolicy}也需要在其它线程中取出任务
+     */
+    protected SQueue<T> newQueue(boolean multiConsumer) {
+        if (multiConsumer) {
+            return new SpmcBasedQueue<T>(queueSize);
+        }
+        return (initialCapacity > 0 ? new SpscChunkedBasedQueue<T>(initialCapacity, queueSize) :
+                new SpscBasedQueue<T>(queueSize));
+    }
+
+    private SQueue<T> spillIfNecessary(SQueue<T> queue) {
+        if (spillCodec == null) {
+            return queue;
+        }
+        SpillingQueue<T> spilling = new SpillingQueue<>(queue, spillCodec, spillDirectory, spillSegmentSize);
+        spillingQueues.add(spilling);
+        return spilling;
     }
 
     @Override
@@ -46,23 +257,392 @@ public abstract class AbstractSPCASConsumer<T> extends AbstractQueuedConsumer<T>
     }
 
     @Override
-    public final void submitSync(T task) {
-        while (!submit(task)) ;
+    public final int submitAll(T[] tasks, int from, int to) {
+        return submitAll(RangeSupplier.of(tasks, from, to));
+    }
+
+    @Override
+    public final int submitAll(List<T> tasks, int from, int to) {
+        return submitAll(RangeSupplier.of(tasks, from, to));
+    }
+
+    private int submitAll(RangeSupplier<T> supplier) {
+        int limit = supplier.remaining();
+        return (limit == 0 ? 0 : retryStrategy.submitAll(jobQueue, supplier, limit));
+    }
+
+    /**
+     * 任务提交，如果队列已满，那么交给{@link BackpressurePolicy}处理.
+     */
+    @Override
+    public final void submitSync(T task) throws InterruptedException {
+        if (!submit(task)) {
+            backpressurePolicy.onFull(target, task);
+        }
+    }
+
+    /**
+     * 按key提交任务，开启工作窃取时这些任务不会被其它消费者窃取.
+     *
+     * @return true, 如果提交成功
+     */
+    public final boolean submitPinned(T task) {
+        return retryStrategy.submit(pinnedQueue, task);
+    }
+
+    /**
+     * 按key提交任务，如果队列已满，那么交给{@link BackpressurePolicy}处理.
+     */
+    public final void submitPinnedSync(T task) throws InterruptedException {
+        if (!submitPinned(task)) {
+            backpressurePolicy.onFull(pinnedTarget, task);
+        }
+    }
+
+    /**
+     * 提交到给定优先级的通道，0为最高优先级.
+     *
+     * @return true, 如果提交成功
+     * @throws IllegalStateException    如果没有开启优先级通道
+     * @throws IllegalArgumentException 如果priority超出了范围
+     */
+    public final boolean submitWithPriority(T task, int priority) {
+        return retryStrategy.submit(lanes().lane(priority), task);
+    }
+
+    /**
+     * 提交到给定优先级的通道，如果通道已满，那么交给{@link BackpressurePolicy}处理.
+     *
+     * @throws IllegalStateException    如果没有开启优先级通道
+     * @throws IllegalArgumentException 如果priority超出了范围
+     */
+    public final void submitSyncWithPriority(T task, int priority) throws InterruptedException {
+        if (!submitWithPriority(task, priority)) {
+            backpressurePolicy.onFull(laneTargets[priority], task);
+        }
+    }
+
+    private PriorityLanesQueue<T> lanes() {
+        final PriorityLanesQueue<T> queue = lanesQueue;
+        if (queue == null) {
+            throw new IllegalStateException("Priority lanes are not enabled or the consumer is not started.");
+        }
+        return queue;
+    }
+
+    /**
+     * 得到给定优先级通道中积压的任务数.
+     */
+    public int getLaneDepth(int priority) {
+        return lanes().getDepth(priority);
+    }
+
+    /**
+     * 得到给定优先级通道采样的平均排队延迟(纳秒)，尚无样本时返回0.
+     */
+    public long getLaneLatencyNanos(int priority) {
+        return lanes().getLatencyNanos(priority);
+    }
+
+    /**
+     * 得到给定优先级通道累计被取出的任务数.
+     */
+    public long getLaneDequeued(int priority) {
+        return lanes().getDequeued(priority);
+    }
+
+    /**
+     * 延迟提交任务，到期后由消费线程直接取出，不经过队列，所以不受队列容量的限制.
+     * 精度为时间轮的一个tick，任务不会早于到期时间被消费.{@link #terminate()}时尚未到期的任务被丢弃.
+     * <p>延迟任务只保存在内存的时间轮中，即使开启了预写日志({@link #setJournal})也不会被写入日志，
+     * 所以进程崩溃或者{@link #terminateNow()}之后尚未被消费的延迟任务将丢失.</p>
+     *
+     * @param delay 延迟时间，不是正数时立即到期
+     * @param unit  delay的单位
+     * @return 可用于取消任务的句柄
+     * @throws IllegalStateException 如果消费者尚未启动
+     */
+    public final Timeout submitDelayed(T task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(unit);
+        return submitAt(task, System.nanoTime() + unit.toNanos(delay));
+    }
+
+    /**
+     * 在给定的时间提交任务，参见{@link #submitDelayed(Object, long, TimeUnit)}.同样不会被写入预写日志.
+     *
+     * @param deadline 到期时间，以{@link System#nanoTime()}为基准
+     * @return 可用于取消任务的句柄
+     * @throws IllegalStateException 如果消费者尚未启动
+     */
+    public final Timeout submitAt(T task, long deadline) {
+        Objects.requireNonNull(task);
+        final TimingWheel<T> timers = this.timers;
+        if (timers == null) {
+            //时间轮在启动时按setTimer的参数创建
+            throw new IllegalStateException("Can't submit delayed tasks before the consumer is started.");
+        }
+        final Timeout timeout = timers.schedule(task, deadline);
+        if (timers.needsWakeup(deadline)) {
+            //消费线程可能正在等待更晚的时间甚至无限期等待，通过RetryStrategy唤醒它重新计算等待时间
+            retryStrategy.submit(timerView, task);
+        }
+        return timeout;
+    }
+
+    /**
+     * 得到尚未到期以及尚未被取消的延迟任务数，尚未启动时为0.
+     */
+    public int getScheduledCount() {
+        final TimingWheel<T> timers = this.timers;
+        return (timers == null ? 0 : timers.size());
+    }
+
+    /**
+     * 取出一个到期的延迟任务.
+     */
+    private T pollTimer() {
+        return (timers.hasPending() ? timers.poll(System.nanoTime()) : null);
+    }
+
+    /**
+     * 通过{@link RetryStrategy}等待任务.有延迟任务时最多等到时间轮下一次推进的时间，期间到期的延迟任务同样被返回.
+     *
+     * @param timed 是否最多等待nanos
+     * @return null, 如果超时、被唤醒但任务已被其它线程取走或者消费者已被终结
+     */
+    private T await(boolean timed, long nanos) throws InterruptedException {
+        final long deadline = (timed ? System.nanoTime() + nanos : 0L);
+        while (true) {
+            long wait = (timed ? nanos : -1L);
+            boolean timer = false;
+            if (timers.hasPending()) {
+                final long now = System.nanoTime();
+                T task = timers.poll(now);
+                if (task != null) {
+                    return task;
+                }
+                if (timed) {
+                    wait = Math.max(0L, deadline - now);
+                }
+                final long next = timers.nanosUntilNext(now);
+                if (next >= 0 && (wait < 0 || next < wait)) {
+                    wait = next;
+                    timer = true;
+                }
+            }
+            T task = (wait < 0 ? retryStrategy.retry(timerView) : retryStrategy.retry(timerView, wait));
+            if (task != WAKEUP) {
+                if (task != null || !timer) {
+                    return task;
+                }
+            }
+            if (getState() != State.RUNNING || (timed && deadline - System.nanoTime() <= 0)) {
+                return null;
+            }
+        }
     }
 
     @Override
     protected final T getTask() throws InterruptedException {
-        return retryStrategy.retry(jobQueue);
+        T task;
+        if ((task = pollStolen()) != null || (task = pollTimer()) != null) {
+            return task;
+        }
+        if (maxThreads > 0) {
+            if ((task = getElasticTask()) != null) {
+                backpressurePolicy.signalNotFull();
+                scaleIfNecessary();
+            }
+            return task;
+        }
+        if (stealIntervalNanos > 0) {
+            if ((task = jobQueue.poll()) == null && (task = steal()) == null) {
+                //定时醒来检查其它消费者是否有积压
+                task = await(true, stealIntervalNanos);
+            }
+        } else {
+            task = await(false, 0L);
+        }
+        if (task != null) {
+            backpressurePolicy.signalNotFull();
+        }
+        return task;
+    }
+
+    @Override
+    protected final T getTask(long nanos) throws InterruptedException {
+        T task;
+        if ((task = pollStolen()) != null || (task = pollTimer()) != null) {
+            return task;
+        }
+        if (stealIntervalNanos > 0) {
+            if ((task = jobQueue.poll()) == null && (task = steal()) == null) {
+                task = await(true, Math.min(nanos, stealIntervalNanos));
+            }
+        } else {
+            task = await(true, nanos);
+        }
+        if (task != null) {
+            backpressurePolicy.signalNotFull();
+        }
+        return task;
+    }
+
+    /**
+     * 弹性模式下获取任务，最多等待{@link #keepAliveNanos}.
+     *
+     * @return null, 如果空闲超过了keepAlive或者消费者已被终结
+     */
+    private T getElasticTask() throws InterruptedException {
+        T task = jobQueue.poll();
+        if (task != null) {
+            return task;
+        }
+        final long deadline = System.nanoTime() + keepAliveNanos;
+        long nanos = keepAliveNanos;
+        do {
+            if (stealIntervalNanos > 0) {
+                if ((task = steal()) == null) {
+                    task = await(true, Math.min(nanos, stealIntervalNanos));
+                }
+            } else {
+                task = await(true, nanos);
+            }
+            //被唤醒但任务已被其它线程取走时继续等待，直到空闲时间达到keepAlive
+        } while (task == null && getState() == State.RUNNING && (nanos = deadline - System.nanoTime()) > 0);
+        return task;
+    }
+
+    /**
+     * 如果队列积压连续两次检查都超过了阈值，那么增加一个消费线程.
+     */
+    private void scaleIfNecessary() {
+        boolean over = jobQueue.size() > scaleUpThreshold;
+        if (over && overloaded) {
+            int n = workers.get();
+            if (n < maxThreads && workers.compareAndSet(n, n + 1)) {
+                try {
+                    elasticExecutor.execute(this);
+                    over = false;
+                } catch (RejectedExecutionException e) {
+                    //已被终结，或者退出中的线程尚未归还给线程池
+                    workers.decrementAndGet();
+                }
+            }
+        }
+        overloaded = over;
+    }
+
+    /**
+     * 弹性模式下，空闲超过keepAlive的消费线程在线程数大于minThreads时退出.
+     */
+    @Override
+    protected final boolean retire() {
+        if (maxThreads == 0 || getState() != State.RUNNING) {
+            return false;
+        }
+        int n;
+        while ((n = workers.get()) > minThreads) {
+            if (workers.compareAndSet(n, n - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 取出当前线程之前窃取但尚未消费的任务.
+     */
+    private T pollStolen() {
+        return (stealIntervalNanos > 0 ? stolenTasks.get().poll() : null);
+    }
+
+    /**
+     * 从积压最多的其它消费者处窃取一批任务(最多为其积压的一半)，第一个任务直接返回，其余的放入当前线程的缓冲区，
+     * 由当前线程在之后的{@link #getTask()}以及{@link #drainTasks(java.util.function.Consumer, int)}中消费.
+     *
+     * @return 如果没有可以窃取的任务，那么返回null
+     */
+    private T steal() {
+        final List<AbstractSPCASConsumer<T>> siblings = this.siblings;
+        if (siblings == null) {
+            return null;
+        }
+        AbstractSPCASConsumer<T> victim = null;
+        int max = 1;
+        for (int i = 0, n = siblings.size(); i < n; i++) {
+            AbstractSPCASConsumer<T> sibling = siblings.get(i);
+            if (sibling != this && sibling.jobQueue instanceof StealableQueue) {
+                int size = ((StealableQueue<T>) sibling.jobQueue).stealableSize();
+                if (size > max) {
+                    max = size;
+                    victim = sibling;
+                }
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+        final Stolen<T> stolen = stolenTasks.get();
+        if (((StealableQueue<T>) victim.jobQueue).steal(stolen, Math.min(batchSize, (max + 1) >> 1)) > 0) {
+            victim.backpressurePolicy.signalNotFull();
+        }
+        return stolen.poll();
+    }
+
+    /**
+     * 开启预写日志时确认已处理的任务.
+     */
+    @Override
+    protected final void afterConsume(int count) {
+        if (journal != null) {
+            journal.acknowledge(count);
+        }
+    }
+
+    @Override
+    protected int drainTasks(java.util.function.Consumer<T> sink, int limit) {
+        int stolen = 0;
+        if (stealIntervalNanos > 0) {
+            final Stolen<T> buffer = stolenTasks.get();
+            T task;
+            while (stolen < limit && (task = buffer.poll()) != null) {
+                sink.accept(task);
+                ++stolen;
+            }
+            if (stolen == limit) {
+                return stolen;
+            }
+        }
+        int count = super.drainTasks(sink, limit - stolen);
+        if (count > 0) {
+            backpressurePolicy.signalNotFull();
+        }
+        return stolen + count;
     }
 
     @Override
     protected void doTerminate() {
         retryStrategy.release();
+        backpressurePolicy.release();
+        for (SpillingQueue<T> spilling : spillingQueues) {
+            spilling.closeWhenDrained();
+        }
+        if (journal != null) {
+            journal.closeWhenDrained();
+        }
     }
 
     @Override
     protected void doTerminateNow() {
         retryStrategy.release();
+        backpressurePolicy.release();
+        for (SpillingQueue<T> spilling : spillingQueues) {
+            spilling.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
     }
 
     public void setRetryStrategy(RetryStrategy<T> retryStrategy) {
@@ -71,8 +651,291 @@ public abstract class AbstractSPCASConsumer<T> extends AbstractQueuedConsumer<T>
         this.retryStrategy = retryStrategy;
     }
 
+    public void setBackpressurePolicy(BackpressurePolicy<T> backpressurePolicy) {
+        Objects.requireNonNull(backpressurePolicy);
+        delegate.checkStart(this);
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    public BackpressurePolicy<T> getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    /**
+     * 检查队列模式的组合: 预写日志不能与工作窃取、磁盘溢出、优先级通道以及{@link QueueFactory}同时使用，
+     * 优先级通道不能与工作窃取以及磁盘溢出同时使用.由各setter以及{@link consumer.pool.DefaultConsumerPool}的setter调用，
+     * 所以冲突在启动之前即被发现.
+     * <p>预写日志的内部队列存放的是日志条目而不是任务，自定义的队列(比如编码任务的堆外队列或者按截止时间排列的队列)
+     * 不能处理它们，所以不能同时使用.</p>
+     *
+     * @throws IllegalStateException 如果给定的模式不能同时使用
+     */
+    public static void checkModes(boolean journal, boolean stealing, boolean spill, boolean lanes, boolean factory) {
+        if (journal && (stealing || spill || lanes)) {
+            throw new IllegalStateException("Journal can't be used with work stealing, spill or priority lanes.");
+        }
+        if (journal && factory) {
+            throw new IllegalStateException("Journal can't be used with a queue factory.");
+        }
+        if (lanes && (stealing || spill)) {
+            throw new IllegalStateException("Priority lanes can't be used with work stealing or spill.");
+        }
+    }
+
+    /**
+     * 开启工作窃取: 空闲的消费线程在park之前从积压最多的sibling处窃取任务，park时最多等待scanInterval，
+     * 以便定时检查sibling是否有积压.通过{@link #submitPinned(Object)}提交的任务不会被窃取.
+     * <p>开启后每个消费者额外使用一个队列存放按key提交的任务.</p>
+     *
+     * @param scanInterval 扫描间隔，必须为正数
+     * @param unit         scanInterval的单位
+     */
+    public void setWorkStealing(long scanInterval, TimeUnit unit) {
+        if (scanInterval <= 0) {
+            throw new IllegalArgumentException("The param scanInterval must be positive.");
+        }
+        Objects.requireNonNull(unit);
+        delegate.checkStart(this);
+        checkModes(journalCodec != null, true, spillCodec != null, priorityLanes > 0, queueFactory != null);
+        this.stealIntervalNanos = unit.toNanos(scanInterval);
+    }
+
+    /**
+     * 设置可以从中窃取任务的消费者，只有开启了工作窃取的消费者才会被窃取.
+     */
+    public void setSiblings(List<AbstractSPCASConsumer<T>> siblings) {
+        this.siblings = siblings;
+    }
+
+    /**
+     * 开启消费线程的弹性伸缩: 启动时只有minThreads个消费线程，当队列积压在连续两次检查时都超过scaleUpThreshold，
+     * 那么增加一个消费线程，最多maxThreads个；消费线程空闲超过keepAlive后退出，但至少保留minThreads个.
+     * <p>开启后构造器中的threads参数被忽略.maxThreads大于1时总是使用支持多消费者的队列.</p>
+     *
+     * @param minThreads       最少的消费线程数，必须为正数
+     * @param maxThreads       最多的消费线程数，不能小于minThreads
+     * @param scaleUpThreshold 增加消费线程的积压阈值，不能为负数
+     * @param keepAlive        多余的消费线程最多空闲的时间，必须为正数
+     * @param unit             keepAlive的单位
+     */
+    public void setElasticThreads(int minThreads, int maxThreads, int scaleUpThreshold, long keepAlive, TimeUnit unit) {
+        if (minThreads < 1) {
+            throw new IllegalArgumentException("The param minThreads must be positive.");
+        }
+        if (maxThreads < minThreads) {
+            throw new IllegalArgumentException("The param maxThreads can't be less than minThreads.");
+        }
+        if (scaleUpThreshold < 0) {
+            throw new IllegalArgumentException("The param scaleUpThreshold can't be negative.");
+        }
+        if (keepAlive <= 0) {
+            throw new IllegalArgumentException("The param keepAlive must be positive.");
+        }
+        Objects.requireNonNull(unit);
+        delegate.checkStart(this);
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.scaleUpThreshold = scaleUpThreshold;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+    }
+
+    /**
+     * 开启可增长队列: 队列初始只分配initialCapacity大小的块，积压时按块增长，最大为构造器中的queueSize，
+     * 消费者越过的块可被回收.
+     * <p>只对单消费者的队列有效(jctools没有可增长的多消费者队列)，需要多消费者队列时(多个消费线程、工作窃取、
+     * 弹性伸缩或者{@link BackpressurePolicy#requiresConcurrentPoll()})仍使用queueSize大小的固定队列.</p>
+     *
+     * @param initialCapacity 初始容量，至少为8，并且向上取整为2的幂后小于queueSize
+     */
+    public void setGrowable(int initialCapacity) {
+        if (initialCapacity < 8) {
+            throw new IllegalArgumentException("The param initialCapacity must be at least 8.");
+        }
+        delegate.checkStart(this);
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * 开启磁盘溢出: 队列已满时任务被编码后写入directory下内存映射的段文件，队列取空后再按顺序读回，
+     * 所以{@link #submit(Object)}不会因队列已满而失败，{@link BackpressurePolicy}也不会被触发.
+     * <p>段文件只用于削峰，不保证进程崩溃后的持久性.{@link #terminate()}在段文件被读空后删除它们，
+     * {@link #terminateNow()}直接删除它们，其中尚未被消费的任务将被丢弃.</p>
+     *
+     * @param directory   段文件所在的目录，不存在时将被创建
+     * @param segmentSize 每个段文件的大小(字节)，单个任务编码后加上4字节的长度不能超过此值
+     * @param codec       任务的序列化方式
+     */
+    public void setSpill(File directory, int segmentSize, TaskCodec<T> codec) {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(codec);
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The param segmentSize must be positive.");
+        }
+        delegate.checkStart(this);
+        checkModes(journalCodec != null, stealIntervalNanos > 0, true, priorityLanes > 0, queueFactory != null);
+        this.spillDirectory = directory;
+        this.spillSegmentSize = segmentSize;
+        this.spillCodec = codec;
+    }
+
+    /**
+     * 开启预写日志: 提交的任务先被编码后追加写入directory下内存映射的日志段，处理完成后被确认，
+     * fsync按flushInterval或者flushBytes成组提交.启动时日志中未被确认的任务被恢复，并先于新提交的任务被消费，
+     * 所以进程崩溃或者{@link #terminateNow()}之后任务不会丢失(至少一次语义)，参见{@link Journal}.
+     * <p>每个消费者必须使用独立的目录.不能与工作窃取、磁盘溢出、优先级通道以及{@link #setQueueFactory(QueueFactory)}
+     * 同时使用.</p>
+     * <p>只有经过队列的任务被写入日志，通过{@link #submitDelayed(Object, long, TimeUnit)}以及
+     * {@link #submitAt(Object, long)}提交的延迟任务不受日志保护.</p>
+     *
+     * @param directory     日志所在的目录，不存在时将被创建
+     * @param segmentSize   每个日志段的大小(字节)，单个任务编码后加上12字节的记录头不能超过此值
+     * @param codec         任务的序列化方式
+     * @param flushInterval 刷盘的最大间隔，必须为正数
+     * @param unit          flushInterval的单位
+     * @param flushBytes    未刷盘的字节数达到此值时立即刷盘，必须为正数
+     * @throws IllegalStateException 如果已经开启了工作窃取、磁盘溢出、优先级通道或者设置了队列工厂
+     */
+    public void setJournal(File directory, int segmentSize, TaskCodec<T> codec, long flushInterval, TimeUnit unit,
+                           int flushBytes) {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(unit);
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The param segmentSize must be positive.");
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("The param flushInterval must be positive.");
+        }
+        if (flushBytes <= 0) {
+            throw new IllegalArgumentException("The param flushBytes must be positive.");
+        }
+        delegate.checkStart(this);
+        checkModes(true, stealIntervalNanos > 0, spillCodec != null, priorityLanes > 0, queueFactory != null);
+        this.journalDirectory = directory;
+        this.journalSegmentSize = segmentSize;
+        this.journalCodec = codec;
+        this.journalFlushNanos = unit.toNanos(flushInterval);
+        this.journalFlushBytes = flushBytes;
+    }
+
+    /**
+     * 得到使用的预写日志，未开启或者尚未启动时返回null.
+     */
+    public Journal<T> getJournal() {
+        return journal;
+    }
+
+    /**
+     * 使用给定的工厂创建队列，代替默认的jctools队列，比如使用堆外或者进程间共享的队列.
+     * 工作窃取等需要额外队列的模式同样使用此工厂.
+     *
+     * @throws IllegalStateException 如果已经开启了预写日志
+     */
+    public void setQueueFactory(QueueFactory<T> queueFactory) {
+        Objects.requireNonNull(queueFactory);
+        delegate.checkStart(this);
+        checkModes(journalCodec != null, stealIntervalNanos > 0, spillCodec != null, priorityLanes > 0, true);
+        this.queueFactory = queueFactory;
+    }
+
+    /**
+     * 按任务的总权重(比如字节数)限制队列容量: 队列中任务的权重之和达到budget时提交失败，
+     * 由{@link RetryStrategy}以及{@link BackpressurePolicy}按队列已满处理.构造器中的queueSize仍然限制任务的数量.
+     * <p>并发提交时检查是宽松的，批量提交时最多超过一个批次的权重，参见{@link WeightedQueue}.
+     * 开启工作窃取时两个队列各自使用budget.</p>
+     *
+     * @param budget  权重之和的上限，必须为正数
+     * @param weigher 权重计算方式，同一任务的权重必须保持不变
+     */
+    public void setWeightBudget(long budget, Weigher<? super T> weigher) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The param budget must be positive.");
+        }
+        Objects.requireNonNull(weigher);
+        delegate.checkStart(this);
+        this.weightBudget = budget;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 开启严格优先级的通道: 每个优先级使用独立的队列，消费线程总是先取优先级高的通道.
+     * 通过{@link #submitWithPriority(Object, int)}指定优先级，{@link #submit(Object)}提交到优先级最低的通道.
+     * <p>每个通道的容量都是构造器中的queueSize.不能与工作窃取、磁盘溢出以及预写日志同时使用.</p>
+     *
+     * @param lanes 通道数，必须为正数
+     */
+    public void setPriorityLanes(int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("The param lanes must be positive.");
+        }
+        delegate.checkStart(this);
+        checkModes(journalCodec != null, stealIntervalNanos > 0, spillCodec != null, true, queueFactory != null);
+        this.priorityLanes = lanes;
+        this.laneWeights = null;
+    }
+
+    /**
+     * 开启加权公平的优先级通道: 消费线程按权重轮流批量取出各通道的任务，低优先级的通道不会被饿死，
+     * 参见{@link PriorityLanesQueue}.其余同{@link #setPriorityLanes(int)}.
+     *
+     * @param weights 各通道的权重，数组长度即为通道数，权重必须为正数
+     */
+    public void setPriorityLanes(int[] weights) {
+        Objects.requireNonNull(weights);
+        if (weights.length == 0) {
+            throw new IllegalArgumentException("The param weights can't be empty.");
+        }
+        for (int weight : weights) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("The param weights must be positive.");
+            }
+        }
+        delegate.checkStart(this);
+        checkModes(journalCodec != null, stealIntervalNanos > 0, spillCodec != null, true, queueFactory != null);
+        this.priorityLanes = weights.length;
+        this.laneWeights = weights.clone();
+    }
+
+    /**
+     * 设置延迟任务所使用的时间轮，默认tick为1毫秒，512个桶.tick越小精度越高，但有延迟任务时消费线程醒来得越频繁.
+     *
+     * @param tick          tick的长度，必须为正数
+     * @param unit          tick的单位
+     * @param ticksPerWheel 桶的数量，向上取整为2的幂，延迟远大于tick * ticksPerWheel的任务在到期前会被多次访问
+     */
+    public void setTimer(long tick, TimeUnit unit, int ticksPerWheel) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("The param tick must be positive.");
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("The param ticksPerWheel must be positive.");
+        }
+        Objects.requireNonNull(unit);
+        delegate.checkStart(this);
+        this.timerTickNanos = unit.toNanos(tick);
+        this.timerTicks = ticksPerWheel;
+    }
+
+    /**
+     * 得到当前的消费线程数.
+     */
+    public int getActiveThreads() {
+        return (maxThreads > 0 ? workers.get() : threads);
+    }
+
     @Override
     protected final ExecutorService startExecutor(ThreadFactory threadFactory) {
+        if (maxThreads > 0) {
+            //退出的消费线程归还给线程池，空闲keepAlive后销毁
+            ThreadPoolExecutor service = new ThreadPoolExecutor(0, maxThreads, keepAliveNanos, TimeUnit.NANOSECONDS,
+                    new SynchronousQueue<>(), threadFactory);
+            this.elasticExecutor = service;
+            workers.set(minThreads);
+            for (int i = 0; i < minThreads; i++) {
+                service.execute(this);
+            }
+            return service;
+        }
         ExecutorService service = Executors.newFixedThreadPool(threads, threadFactory);
         int index = 0;
         while (index++ < threads) {
@@ -81,4 +944,91 @@ public abstract class AbstractSPCASConsumer<T> extends AbstractQueuedConsumer<T>
         return service;
     }
 
+    /**
+     * {@link BackpressurePolicy.Target}骨架实现.
+     */
+    private abstract class Target implements BackpressurePolicy.Target<T> {
+
+        /**
+         * 取出的任务将由当前线程直接执行或者丢弃，所以立即确认.
+         */
+        @Override
+        public T poll() {
+            T task = jobQueue.poll();
+            if (task != null && journal != null) {
+                journal.acknowledge(1);
+            }
+            return task;
+        }
+
+        @Override
+        public void execute(T task) {
+            try {
+                consume(task);
+            } catch (RuntimeException e) {
+                handleUncheckedException(e);
+            }
+        }
+
+    }
+
+    /**
+     * 交给{@link RetryStrategy}的队列视图: 队列为空但有新提交的延迟任务时返回{@link #WAKEUP}，使等待中的消费线程
+     * 重新计算等待时间；{@link #offer(Object)}不做任何事情，只用于触发RetryStrategy的唤醒.
+     * 两者遵循与队列相同的"先发布再检查"协议，所以唤醒不会丢失.
+     */
+    private final class TimerView implements SQueue<T> {
+
+        @Override
+        public boolean offer(T task) {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T poll() {
+            final T task = jobQueue.poll();
+            return (task == null && timers.hasSubmitted() ? (T) WAKEUP : task);
+        }
+
+        @Override
+        public int drain(java.util.function.Consumer<? super T> sink, int limit) {
+            return jobQueue.drain(sink, limit);
+        }
+
+        @Override
+        public int fill(Supplier<? extends T> supplier, int limit) {
+            return 0;
+        }
+
+        @Override
+        public int size() {
+            return jobQueue.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return jobQueue.isEmpty() && !timers.hasSubmitted();
+        }
+
+    }
+
+    /**
+     * 接收窃取的任务，每个消费线程一个，只被其所属的线程访问.
+     */
+    private static final class Stolen<T> implements java.util.function.Consumer<T> {
+
+        private final ArrayDeque<T> tasks = new ArrayDeque<>();
+
+        @Override
+        public void accept(T task) {
+            tasks.add(task);
+        }
+
+        private T poll() {
+            return tasks.poll();
+        }
+
+    }
+
 }
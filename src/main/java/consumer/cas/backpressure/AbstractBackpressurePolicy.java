@@ -0,0 +1,45 @@
+package consumer.cas.backpressure;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BackpressurePolicy}骨架实现，提供触发次数的统计.
+ *
+ * @author skywalker
+ */
+public abstract class AbstractBackpressurePolicy<T> implements BackpressurePolicy<T> {
+
+    protected final LongAdder fired;
+
+    protected AbstractBackpressurePolicy() {
+        this(new LongAdder());
+    }
+
+    /**
+     * 用于{@link #copy()}，与原对象共享统计数据.
+     */
+    protected AbstractBackpressurePolicy(LongAdder fired) {
+        this.fired = fired;
+    }
+
+    @Override
+    public void signalNotFull() {
+        //do nothing
+    }
+
+    @Override
+    public void release() {
+        //do nothing
+    }
+
+    @Override
+    public boolean requiresConcurrentPoll() {
+        return false;
+    }
+
+    @Override
+    public long getFired() {
+        return fired.sum();
+    }
+
+}
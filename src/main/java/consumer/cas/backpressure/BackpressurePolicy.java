@@ -0,0 +1,69 @@
+package consumer.cas.backpressure;
+
+/**
+ * 队列已满时生产者采取的策略，在{@link consumer.cas.AbstractSPCASConsumer#submitSync(Object)}提交失败时使用.
+ *
+ * @author skywalker
+ */
+public interface BackpressurePolicy<T> {
+
+    /**
+     * 处理一次提交失败.
+     *
+     * @param target 提交的目标
+     * @param task   任务/消息
+     * @return true，如果任务最终被提交或被执行
+     * @throws InterruptedException 如果生产者在等待时被中断
+     */
+    boolean onFull(Target<T> target, T task) throws InterruptedException;
+
+    /**
+     * 消费者从队列中取出任务后调用，即"队列不满"的通知，此方法位于消费者的热路径上.
+     */
+    void signalNotFull();
+
+    /**
+     * 消费者终结时调用，唤醒所有正在等待的生产者.
+     */
+    void release();
+
+    /**
+     * 此策略是否需要在生产者线程中从队列取出任务，如果是，那么消费者需使用支持多消费者的队列.
+     */
+    boolean requiresConcurrentPoll();
+
+    /**
+     * 此策略被触发的次数.
+     */
+    long getFired();
+
+    /**
+     * 返回当前对象的一个拷贝，拷贝与当前对象共享统计数据.
+     *
+     * @return {@link BackpressurePolicy} 副本
+     */
+    BackpressurePolicy<T> copy();
+
+    /**
+     * 策略所作用的消费者.
+     */
+    interface Target<T> {
+
+        /**
+         * 尝试提交任务，语义同{@link consumer.Submitable#submit(Object)}.
+         */
+        boolean offer(T task);
+
+        /**
+         * 从队头取出任务.
+         */
+        T poll();
+
+        /**
+         * 在当前线程中直接消费任务.
+         */
+        void execute(T task);
+
+    }
+
+}
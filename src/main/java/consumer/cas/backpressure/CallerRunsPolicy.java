@@ -0,0 +1,31 @@
+package consumer.cas.backpressure;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BackpressurePolicy}实现，在生产者线程中直接消费任务，这样也就自然地降低了生产的速度.
+ *
+ * @author skywalker
+ */
+public class CallerRunsPolicy<T> extends AbstractBackpressurePolicy<T> {
+
+    public CallerRunsPolicy() {
+    }
+
+    private CallerRunsPolicy(LongAdder fired) {
+        super(fired);
+    }
+
+    @Override
+    public boolean onFull(Target<T> target, T task) {
+        fired.increment();
+        target.execute(task);
+        return true;
+    }
+
+    @Override
+    public BackpressurePolicy<T> copy() {
+        return new CallerRunsPolicy<T>(fired);
+    }
+
+}
@@ -0,0 +1,30 @@
+package consumer.cas.backpressure;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BackpressurePolicy}实现，丢弃当前提交的任务.
+ *
+ * @author skywalker
+ */
+public class DropNewestPolicy<T> extends AbstractBackpressurePolicy<T> {
+
+    public DropNewestPolicy() {
+    }
+
+    private DropNewestPolicy(LongAdder fired) {
+        super(fired);
+    }
+
+    @Override
+    public boolean onFull(Target<T> target, T task) {
+        fired.increment();
+        return false;
+    }
+
+    @Override
+    public BackpressurePolicy<T> copy() {
+        return new DropNewestPolicy<T>(fired);
+    }
+
+}
@@ -0,0 +1,45 @@
+package consumer.cas.backpressure;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BackpressurePolicy}实现，丢弃队头(最旧)的任务，然后重新提交当前任务.
+ * <p>生产者需要从队列中取出任务，所以消费者会使用支持多消费者的队列.</p>
+ *
+ * @author skywalker
+ */
+public class DropOldestPolicy<T> extends AbstractBackpressurePolicy<T> {
+
+    public DropOldestPolicy() {
+    }
+
+    private DropOldestPolicy(LongAdder fired) {
+        super(fired);
+    }
+
+    /**
+     * 丢弃队头的任务直到当前任务被提交.如果队列已空仍然无法提交(比如消费者已被终结，队列不再接受任务)，
+     * 那么放弃并返回false，而不是一直重试.
+     */
+    @Override
+    public boolean onFull(Target<T> target, T task) {
+        do {
+            if (target.poll() == null) {
+                return target.offer(task);
+            }
+            fired.increment();
+        } while (!target.offer(task));
+        return true;
+    }
+
+    @Override
+    public boolean requiresConcurrentPoll() {
+        return true;
+    }
+
+    @Override
+    public BackpressurePolicy<T> copy() {
+        return new DropOldestPolicy<T>(fired);
+    }
+
+}
@@ -0,0 +1,89 @@
+package consumer.cas.backpressure;
+
+import consumer.util.WaiterStack;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static consumer.util.UnsafeAccess.UNSAFE;
+
+/**
+ * {@link BackpressurePolicy}实现，生产者park直到消费者取出任务后发出"队列不满"的通知.
+ *
+ * @author skywalker
+ */
+public class ParkPolicy<T> extends AbstractBackpressurePolicy<T> {
+
+    private final WaiterStack waiters = new WaiterStack();
+    private volatile boolean released = false;
+
+    public ParkPolicy() {
+    }
+
+    protected ParkPolicy(LongAdder fired) {
+        super(fired);
+    }
+
+    @Override
+    public boolean onFull(Target<T> target, T task) throws InterruptedException {
+        fired.increment();
+        return await(target, task, false, 0L);
+    }
+
+    /**
+     * 反复尝试提交，失败时park.
+     *
+     * @return false，如果超时或者消费者已经终结
+     */
+    protected final boolean await(Target<T> target, T task, boolean timed, long nanos) throws InterruptedException {
+        final long deadline = (timed ? System.nanoTime() + nanos : 0L);
+        while (!released) {
+            final WaiterStack.Waiter waiter = waiters.push();
+            if (target.offer(task)) {
+                waiters.cancel(waiter);
+                return true;
+            }
+            while (waiter.isWaiting() && !released) {
+                if (timed) {
+                    nanos = deadline - System.nanoTime();
+                    if (nanos <= 0) {
+                        waiters.cancel(waiter);
+                        return target.offer(task);
+                    }
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    waiters.cancel(waiter);
+                    throw new InterruptedException();
+                }
+            }
+            waiters.cancel(waiter);
+        }
+        return false;
+    }
+
+    /**
+     * 消费者取出任务后的StoreLoad屏障与生产者入栈时的CAS配对，保证不会丢失唤醒.
+     */
+    @Override
+    public void signalNotFull() {
+        UNSAFE.fullFence();
+        if (!waiters.isEmpty()) {
+            waiters.signalAll();
+        }
+    }
+
+    @Override
+    public void release() {
+        released = true;
+        waiters.signalAll();
+    }
+
+    @Override
+    public BackpressurePolicy<T> copy() {
+        return new ParkPolicy<T>(fired);
+    }
+
+}
@@ -0,0 +1,51 @@
+package consumer.cas.backpressure;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link BackpressurePolicy}实现，同{@link ParkPolicy}，但最多等待给定的时间，超时后丢弃任务.
+ *
+ * @author skywalker
+ */
+public class TimeoutPolicy<T> extends ParkPolicy<T> {
+
+    private final long timeoutNanos;
+    private final LongAdder timeouts;
+
+    public TimeoutPolicy(long timeout, TimeUnit unit) {
+        this(unit.toNanos(timeout), new LongAdder(), new LongAdder());
+    }
+
+    private TimeoutPolicy(long timeoutNanos, LongAdder fired, LongAdder timeouts) {
+        super(fired);
+        if (timeoutNanos < 0) {
+            throw new IllegalArgumentException("The param timeout can't be negative.");
+        }
+        this.timeoutNanos = timeoutNanos;
+        this.timeouts = timeouts;
+    }
+
+    @Override
+    public boolean onFull(Target<T> target, T task) throws InterruptedException {
+        fired.increment();
+        boolean result = await(target, task, true, timeoutNanos);
+        if (!result) {
+            timeouts.increment();
+        }
+        return result;
+    }
+
+    /**
+     * 等待超时(任务被丢弃)的次数.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public BackpressurePolicy<T> copy() {
+        return new TimeoutPolicy<T>(timeoutNanos, fired, timeouts);
+    }
+
+}
@@ -0,0 +1,187 @@
+package consumer.cas.strategy;
+
+import consumer.queue.SQueue;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RetryStrategy}实现，依次经过自旋、{@link Thread#yield()}以及park三个阶段，并根据最近的运行情况自动调整
+ * 自旋和yield的次数:
+ * <p>1. 记录最近自旋/yield阶段成功获取任务的比例，比例高则增加对应阶段的次数，比例低则减少.</p>
+ * <p>2. 记录任务到达的平均间隔，如果间隔远大于自旋能够覆盖的时间(比如长时间空闲)，那么直接park，不再消耗CPU.</p>
+ * <p>统计数据在同一消费者的多个消费线程之间共享，允许存在竞争，只影响调整的精度.</p>
+ *
+ * @author skywalker
+ */
+public class AdaptiveStrategy<T> extends ParkStrategy<T> {
+
+    public static final int MIN_SPIN = 16;
+    public static final int MAX_SPIN = 16 * 1024;
+    public static final int MAX_YIELD = 256;
+
+    /**
+     * 任务平均到达间隔超过此值(纳秒)时认为处于空闲状态，直接park.
+     */
+    private final long idleNanos;
+
+    private int spinBudget = MIN_SPIN;
+    private int yieldBudget = MAX_YIELD >> 3;
+    /**
+     * 自旋/yield阶段成功率的指数移动平均，以{@link #RATIO_ONE}为1.
+     */
+    private int spinRatio = RATIO_ONE >> 1;
+    private int yieldRatio = RATIO_ONE >> 1;
+    /**
+     * 任务到达间隔的指数移动平均(纳秒).
+     */
+    private long avgInterval = 0;
+    private long lastArrival = 0;
+
+    private final LongAdder spinHits = new LongAdder();
+    private final LongAdder yieldHits = new LongAdder();
+    private final LongAdder parks = new LongAdder();
+
+    private static final int RATIO_ONE = 1024;
+
+    public AdaptiveStrategy() {
+        this(1000000L);
+    }
+
+    /**
+     * @param idleNanos 任务平均到达间隔超过此值时跳过自旋和yield阶段
+     */
+    public AdaptiveStrategy(long idleNanos) {
+        if (idleNanos <= 0) {
+            throw new IllegalArgumentException("The param idleNanos must be positive.");
+        }
+        this.idleNanos = idleNanos;
+    }
+
+    @Override
+    public T retry(SQueue<T> queue) throws InterruptedException {
+        return retry(queue, false, 0L);
+    }
+
+    @Override
+    public T retry(SQueue<T> queue, long nanos) throws InterruptedException {
+        return retry(queue, true, nanos);
+    }
+
+    private T retry(SQueue<T> queue, boolean timed, long nanos) throws InterruptedException {
+        T task = queue.poll();
+        if (task != null) {
+            arrive();
+            return task;
+        }
+        if (timed && nanos <= 0) {
+            return null;
+        }
+        final long deadline = (timed ? System.nanoTime() + nanos : 0L);
+        if (avgInterval < idleNanos) {
+            if ((task = spinPhase(queue)) != null || (task = yieldPhase(queue)) != null) {
+                arrive();
+                return task;
+            }
+        }
+        parks.increment();
+        task = (timed ? super.retry(queue, deadline - System.nanoTime()) : super.retry(queue));
+        if (task != null) {
+            arrive();
+        }
+        return task;
+    }
+
+    private T spinPhase(SQueue<T> queue) {
+        final int budget = spinBudget;
+        T task = null;
+        for (int i = 0; i < budget && (task = queue.poll()) == null; i++) {
+        }
+        if (task != null) {
+            spinHits.increment();
+        }
+        spinRatio = ewma(spinRatio, task != null);
+        spinBudget = adjust(budget, spinRatio, MIN_SPIN, MAX_SPIN);
+        return task;
+    }
+
+    private T yieldPhase(SQueue<T> queue) {
+        final int budget = yieldBudget;
+        T task = null;
+        for (int i = 0; i < budget; i++) {
+            Thread.yield();
+            if ((task = queue.poll()) != null) {
+                break;
+            }
+        }
+        if (task != null) {
+            yieldHits.increment();
+        }
+        yieldRatio = ewma(yieldRatio, task != null);
+        yieldBudget = adjust(budget, yieldRatio, 0, MAX_YIELD);
+        return task;
+    }
+
+    /**
+     * 成功率高于3/4时加倍，低于1/4时减半.
+     */
+    private static int adjust(int budget, int ratio, int min, int max) {
+        if (ratio > (RATIO_ONE >> 2) * 3) {
+            budget = Math.min(max, Math.max(1, budget << 1));
+        } else if (ratio < (RATIO_ONE >> 2)) {
+            budget = Math.max(min, budget >> 1);
+        }
+        return budget;
+    }
+
+    private static int ewma(int ratio, boolean hit) {
+        return ratio - (ratio >> 3) + (hit ? (RATIO_ONE >> 3) : 0);
+    }
+
+    /**
+     * 记录一次任务到达，更新到达间隔的指数移动平均.
+     */
+    private void arrive() {
+        long now = System.nanoTime();
+        if (lastArrival != 0) {
+            //限制单次间隔的影响，以便空闲结束后能迅速恢复自旋
+            long interval = Math.min(now - lastArrival, idleNanos << 1);
+            avgInterval = avgInterval - (avgInterval >> 3) + (interval >> 3);
+        }
+        lastArrival = now;
+    }
+
+    /**
+     * 自旋阶段成功获取任务的次数.
+     */
+    public long getSpinHits() {
+        return spinHits.sum();
+    }
+
+    /**
+     * yield阶段成功获取任务的次数.
+     */
+    public long getYieldHits() {
+        return yieldHits.sum();
+    }
+
+    /**
+     * 进入park阶段的次数.
+     */
+    public long getParks() {
+        return parks.sum();
+    }
+
+    public int getSpinBudget() {
+        return spinBudget;
+    }
+
+    public int getYieldBudget() {
+        return yieldBudget;
+    }
+
+    @Override
+    public RetryStrategy<T> copy() {
+        return new AdaptiveStrategy<T>(idleNanos);
+    }
+
+}
@@ -6,6 +6,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * {@link RetryStrategy}实现，如果获取任务失败，那么将会进行阻塞直到有新的任务可以获取.
@@ -31,6 +32,23 @@ public class BlockStrategy<T> implements RetryStrategy<T> {
                 empty.await();
             } finally {
                 lock.unlock();
+                waiters.decrementAndGet();
+            }
+        }
+        return task;
+    }
+
+    @Override
+    public T retry(SQueue<T> queue, long nanos) throws InterruptedException {
+        T task;
+        if ((task = queue.poll()) == null && nanos > 0) {
+            waiters.incrementAndGet();
+            lock.lock();
+            try {
+                empty.awaitNanos(nanos);
+            } finally {
+                lock.unlock();
+                waiters.decrementAndGet();
             }
         }
         return task;
@@ -45,6 +63,15 @@ public class BlockStrategy<T> implements RetryStrategy<T> {
         return result;
     }
 
+    @Override
+    public int submitAll(SQueue<T> queue, Supplier<? extends T> tasks, int limit) {
+        int count = queue.fill(tasks, limit);
+        if (count > 0) {
+            signalIfNecessary(count > 1);
+        }
+        return count;
+    }
+
     @Override
     public void release() {
         signalIfNecessary(true);
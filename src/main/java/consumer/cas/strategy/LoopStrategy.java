@@ -2,6 +2,8 @@ package consumer.cas.strategy;
 
 import consumer.queue.SQueue;
 
+import java.util.function.Supplier;
+
 /**
  * {@link RetryStrategy}实现，如果获取新的任务失败，那么将会不断的重试.
  *
@@ -14,11 +16,21 @@ public class LoopStrategy<T> implements RetryStrategy<T> {
         return queue.poll();
     }
 
+    @Override
+    public T retry(SQueue<T> queue, long nanos) {
+        return queue.poll();
+    }
+
     @Override
     public boolean submit(SQueue<T> queue, T task) {
         return queue.offer(task);
     }
 
+    @Override
+    public int submitAll(SQueue<T> queue, Supplier<? extends T> tasks, int limit) {
+        return queue.fill(tasks, limit);
+    }
+
     @Override
     public void release() {
         //do nothing
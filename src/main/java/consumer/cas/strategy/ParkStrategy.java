@@ -0,0 +1,125 @@
+package consumer.cas.strategy;
+
+import consumer.queue.SQueue;
+import consumer.util.WaiterStack;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static consumer.util.UnsafeAccess.UNSAFE;
+
+/**
+ * {@link RetryStrategy}实现，语义同{@link BlockStrategy}，但使用{@link LockSupport#park(Object)}/
+ * {@link LockSupport#unpark(Thread)}以及一个无锁的等待者栈代替锁和{@link java.util.concurrent.locks.Condition}.
+ * <p>消费者采用"先发布再检查"的协议: 先将自己压入等待者栈，然后再次检查队列，只有仍然为空时才会park，
+ * 生产者在offer之后检查等待者栈，所以不会丢失唤醒.当没有消费者在等待时，生产者只需一次volatile读，不需要加锁.</p>
+ *
+ * @author skywalker
+ */
+public class ParkStrategy<T> implements RetryStrategy<T> {
+
+    private final WaiterStack waiters = new WaiterStack();
+    private volatile boolean released = false;
+
+    @Override
+    public T retry(SQueue<T> queue) throws InterruptedException {
+        T task;
+        if ((task = queue.poll()) == null) {
+            task = await(queue, false, 0L);
+        }
+        return task;
+    }
+
+    @Override
+    public T retry(SQueue<T> queue, long nanos) throws InterruptedException {
+        T task;
+        if ((task = queue.poll()) == null && nanos > 0) {
+            task = await(queue, true, nanos);
+        }
+        return task;
+    }
+
+    /**
+     * 发布等待者，再次检查队列，然后park直到被唤醒、超时或被释放.
+     *
+     * @return 再次检查时获得的任务，如果是被唤醒的，那么返回null，由调用者重新获取
+     */
+    private T await(SQueue<T> queue, boolean timed, long nanos) throws InterruptedException {
+        final WaiterStack.Waiter waiter = waiters.push();
+        T task = queue.poll();
+        if (task != null || released) {
+            waiters.cancel(waiter);
+            return task;
+        }
+        final long deadline = (timed ? System.nanoTime() + nanos : 0L);
+        while (waiter.isWaiting() && !released) {
+            if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                if (!waiters.cancel(waiter) && !released) {
+                    //唤醒已经发给了当前线程，但当前线程即将退出，所以转交给其它等待者
+                    waiters.signalOne();
+                }
+                throw new InterruptedException();
+            }
+        }
+        //被唤醒后调用者总会重新检查队列，所以即使唤醒已经发给了当前线程也不会丢失任务
+        waiters.cancel(waiter);
+        return null;
+    }
+
+    @Override
+    public boolean submit(SQueue<T> queue, T task) {
+        boolean result = queue.offer(task);
+        if (result) {
+            signalIfNecessary(false);
+        }
+        return result;
+    }
+
+    @Override
+    public int submitAll(SQueue<T> queue, Supplier<? extends T> tasks, int limit) {
+        int count = queue.fill(tasks, limit);
+        if (count > 0) {
+            signalIfNecessary(count > 1);
+        }
+        return count;
+    }
+
+    @Override
+    public void release() {
+        released = true;
+        waiters.signalAll();
+    }
+
+    /**
+     * 如果有正在park的消费线程，唤醒全部或其中一个.
+     * <p>offer的发布与读取栈顶之间需要一个StoreLoad屏障，与消费者入栈时的CAS配对，否则可能丢失唤醒.</p>
+     *
+     * @param all 如果为true，那么唤醒所有正在park的消费线程
+     */
+    private void signalIfNecessary(boolean all) {
+        UNSAFE.fullFence();
+        if (waiters.isEmpty()) {
+            return;
+        }
+        if (all) {
+            waiters.signalAll();
+        } else {
+            waiters.signalOne();
+        }
+    }
+
+    @Override
+    public RetryStrategy<T> copy() {
+        return new ParkStrategy<T>();
+    }
+
+}
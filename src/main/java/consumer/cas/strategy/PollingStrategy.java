@@ -0,0 +1,105 @@
+package consumer.cas.strategy;
+
+import consumer.queue.SQueue;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * {@link RetryStrategy}实现，不依赖生产者的唤醒: 依次自旋、{@link Thread#yield()}，然后以指数退避的间隔
+ * park并轮询队列，间隔最长为maxParkNanos.
+ * <p>适用于生产者不经过{@link #submit(SQueue, Object)}直接写入队列的场景，比如其它进程中的生产者
+ * 写入{@link consumer.queue.offheap.SharedMemoryQueue}.空闲时消费线程最多每隔maxParkNanos醒来一次.</p>
+ *
+ * @author skywalker
+ */
+public class PollingStrategy<T> implements RetryStrategy<T> {
+
+    private static final int SPINS = 128;
+    private static final int YIELDS = 16;
+    private static final long MIN_PARK_NANOS = 1000L;
+
+    private final long maxParkNanos;
+    private volatile boolean released = false;
+
+    public PollingStrategy() {
+        this(1000000L);
+    }
+
+    /**
+     * @param maxParkNanos 最长的park间隔，必须为正数
+     */
+    public PollingStrategy(long maxParkNanos) {
+        if (maxParkNanos <= 0) {
+            throw new IllegalArgumentException("The param maxParkNanos must be positive.");
+        }
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public T retry(SQueue<T> queue) throws InterruptedException {
+        return retry(queue, false, 0L);
+    }
+
+    @Override
+    public T retry(SQueue<T> queue, long nanos) throws InterruptedException {
+        T task = queue.poll();
+        return (task != null || nanos <= 0 ? task : retry(queue, true, nanos));
+    }
+
+    private T retry(SQueue<T> queue, boolean timed, long nanos) throws InterruptedException {
+        final long deadline = (timed ? System.nanoTime() + nanos : 0L);
+        T task;
+        for (int i = 0; i < SPINS; i++) {
+            if ((task = queue.poll()) != null) {
+                return task;
+            }
+        }
+        for (int i = 0; i < YIELDS; i++) {
+            Thread.yield();
+            if ((task = queue.poll()) != null) {
+                return task;
+            }
+        }
+        long park = MIN_PARK_NANOS;
+        while (!released) {
+            if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    return null;
+                }
+                park = Math.min(park, nanos);
+            }
+            LockSupport.parkNanos(this, park);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if ((task = queue.poll()) != null) {
+                return task;
+            }
+            park = Math.min(park << 1, maxParkNanos);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean submit(SQueue<T> queue, T task) {
+        return queue.offer(task);
+    }
+
+    @Override
+    public int submitAll(SQueue<T> queue, Supplier<? extends T> tasks, int limit) {
+        return queue.fill(tasks, limit);
+    }
+
+    @Override
+    public void release() {
+        released = true;
+    }
+
+    @Override
+    public RetryStrategy<T> copy() {
+        return new PollingStrategy<T>(maxParkNanos);
+    }
+
+}
@@ -3,6 +3,9 @@ package consumer.cas.strategy;
 import consumer.cas.AbstractSPCASConsumer;
 import consumer.queue.SQueue;
 
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
 /**
  * 当{@link AbstractSPCASConsumer}获取任务失败时采取的重试策略.
  *
@@ -10,6 +13,11 @@ import consumer.queue.SQueue;
  */
 public interface RetryStrategy<T> {
 
+    /**
+     * {@link #retry(SQueue, long)}的默认实现中两次轮询之间最多park的纳秒数.
+     */
+    long MAX_POLL_PARK_NANOS = 100_000L;
+
     /**
      * 重试.
      *
@@ -18,11 +26,49 @@ public interface RetryStrategy<T> {
      */
     T retry(SQueue<T> queue) throws InterruptedException;
 
+    /**
+     * 重试，最多等待给定的时间.
+     * <p>默认实现不依赖提交时的唤醒，以最多{@link #MAX_POLL_PARK_NANOS}的间隔轮询队列，直到超时.</p>
+     *
+     * @param queue {@link SQueue}
+     * @param nanos 最多等待的纳秒数，如果不是正数，那么不进行等待
+     * @return 如果超时仍没有获取到任务，那么返回null
+     * @throws InterruptedException 如果线程在睡眠等待时被中断
+     */
+    default T retry(SQueue<T> queue, long nanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + nanos;
+        T task;
+        while ((task = queue.poll()) == null && (nanos = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, Math.min(nanos, MAX_POLL_PARK_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return task;
+    }
+
     /**
      * 任务提交.
      */
     boolean submit(SQueue<T> queue, T task);
 
+    /**
+     * 批量任务提交，对于整批任务最多只进行一次唤醒.
+     * <p>默认实现逐个调用{@link #submit(SQueue, Object)}，每个任务都可能唤醒一次；最后一个任务提交失败时
+     * tasks会比返回值多被调用一次，调用者应以返回值为准.</p>
+     *
+     * @param tasks 任务的提供者
+     * @param limit 最多提交的任务数
+     * @return 实际提交的任务数
+     */
+    default int submitAll(SQueue<T> queue, Supplier<? extends T> tasks, int limit) {
+        int count = 0;
+        while (count < limit && submit(queue, tasks.get())) {
+            ++count;
+        }
+        return count;
+    }
+
     /**
      * 放弃重试，比如对于{@link BlockStrategy},那么就应该从阻塞中醒来.
      */
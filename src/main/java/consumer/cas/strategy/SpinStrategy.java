@@ -32,6 +32,24 @@ public class SpinStrategy<T> extends BlockStrategy<T> {
         return task;
     }
 
+    @Override
+    public T retry(SQueue<T> queue, long nanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + nanos;
+        int times = 0;
+        T task = null;
+        while (times < spin) {
+            task = queue.poll();
+            if (task != null) {
+                break;
+            }
+            ++times;
+        }
+        if (task == null) {
+            task = super.retry(queue, deadline - System.nanoTime());
+        }
+        return task;
+    }
+
     @Override
     public RetryStrategy<T> copy() {
         return new SpinStrategy<T>(spin);
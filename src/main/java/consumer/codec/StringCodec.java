@@ -0,0 +1,35 @@
+package consumer.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link String}的{@link TaskCodec}实现，使用UTF-8编码.
+ *
+ * @author skywalker
+ */
+public final class StringCodec implements TaskCodec<String> {
+
+    public static final StringCodec INSTANCE = new StringCodec();
+
+    private StringCodec() {
+    }
+
+    @Override
+    public void encode(String task, ByteBuffer buffer) {
+        byte[] bytes = task.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(bytes);
+    }
+
+    @Override
+    public String decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,25 @@
+package consumer.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 任务的序列化SPI，用于需要将任务写出堆外或者写入文件的队列.
+ * <p>实现必须是无状态的或者线程安全的，并且不应持有传入的{@link ByteBuffer}.</p>
+ *
+ * @author skywalker
+ */
+public interface TaskCodec<T> {
+
+    /**
+     * 将任务编码到buffer的当前位置，编码完成后buffer的position应位于记录的末尾.
+     *
+     * @throws java.nio.BufferOverflowException 如果剩余空间不足，调用者会在更大的空间中重试
+     */
+    void encode(T task, ByteBuffer buffer);
+
+    /**
+     * 从buffer中解码一个任务，buffer的[position, limit)恰好是{@link #encode(Object, ByteBuffer)}写入的内容.
+     */
+    T decode(ByteBuffer buffer);
+
+}
@@ -0,0 +1,566 @@
+package consumer.journal;
+
+import consumer.codec.TaskCodec;
+import consumer.util.Util;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 任务的预写日志(write-ahead journal): 任务在入队时被编码后追加写入内存映射的段文件，处理完成后被确认，
+ * 重新打开时未被确认的任务被恢复，所以进程崩溃或者{@code terminateNow()}都不会丢失已提交的任务(至少一次语义).
+ * <p>记录格式为[记录长度(int)][序号(long)][内容]，记录长度最后写入，作为记录完整的标志.</p>
+ * <p>fsync由后台线程成组提交: 每隔flushInterval，或者未刷盘的字节数达到flushBytes时，一次性force所有被写过的段，
+ * 然后将确认水位(第一个未被确认的序号)写入checkpoint文件，水位之前的段被删除.
+ * 所以崩溃后最多丢失最近一个刷盘周期内提交的任务(操作系统崩溃时)，以及重复处理最近一个周期内已确认的任务.</p>
+ * <p>确认可以乱序: 每个序号在一个环形窗口中被标记，水位只在连续被确认时推进.未确认的任务数达到窗口大小时，
+ * 入队失败，由调用者的队列已满策略处理.</p>
+ *
+ * @author skywalker
+ */
+public class Journal<T> implements Closeable {
+
+    /**
+     * 记录头: 记录长度(int) + 序号(long).
+     */
+    static final int HEADER = 12;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final File directory;
+    private final int segmentSize;
+    private final TaskCodec<T> codec;
+    private final long flushIntervalNanos;
+    private final int flushBytes;
+    private final Logger log = Util.getLogger(this.getClass());
+
+    /**
+     * 保护段的写入以及序号的分配.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    /**
+     * 上次刷盘之后被写过的段.
+     */
+    private final List<Segment> dirty = new ArrayList<>();
+    /**
+     * 下一个被分配的序号，只在锁内修改.
+     */
+    private volatile long nextSequence;
+    private int unflushedBytes = 0;
+
+    /**
+     * 第一个未被确认的序号.
+     */
+    private final AtomicLong watermark;
+    /**
+     * 各序号是否已被确认: done[seq & mask] == seq.
+     */
+    private final AtomicLongArray done;
+    private final int mask;
+    private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+    private final RandomAccessFile checkpointFile;
+    private final MappedByteBuffer checkpoint;
+    private final List<Entry<T>> recovered;
+
+    private final Thread flusher;
+    private volatile boolean closing = false;
+    private volatile boolean closed = false;
+
+    /**
+     * 打开directory下的日志并恢复其中未被确认的任务(通过{@link #recovered()}得到)，然后启动刷盘线程.
+     *
+     * @param directory     日志所在的目录，不存在时将被创建
+     * @param segmentSize   每个段文件的大小(字节)，单个任务编码后加上12字节的记录头不能超过此值
+     * @param codec         任务的序列化方式
+     * @param flushInterval 刷盘的最大间隔，必须为正数
+     * @param unit          flushInterval的单位
+     * @param flushBytes    未刷盘的字节数达到此值时立即刷盘，必须为正数
+     * @param capacity      最多未被确认的任务数的下限，实际的窗口大小会被向上取整为2的幂，并且至少能容纳恢复的任务
+     * @throws UncheckedIOException 如果读写日志失败
+     */
+    public Journal(File directory, int segmentSize, TaskCodec<T> codec, long flushInterval, TimeUnit unit,
+                   int flushBytes, int capacity) {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(unit);
+        if (segmentSize <= HEADER) {
+            throw new IllegalArgumentException("The param segmentSize must be bigger than " + HEADER + ".");
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("The param flushInterval must be positive.");
+        }
+        if (flushBytes <= 0) {
+            throw new IllegalArgumentException("The param flushBytes must be positive.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The param capacity must be positive.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Can't create the journal directory " + directory + ".");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.flushBytes = flushBytes;
+        try {
+            this.checkpointFile = new RandomAccessFile(new File(directory, CHECKPOINT), "rw");
+            this.checkpoint = checkpointFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 8);
+            final long start = checkpoint.getLong(0);
+            this.recovered = recover(start);
+            if (nextSequence < start) {
+                nextSequence = start;
+            }
+            this.watermark = new AtomicLong(start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final long outstanding = nextSequence - watermark.get();
+        final long window = Math.max(2L * capacity, outstanding + capacity);
+        if (window > (1 << 30)) {
+            throw new IllegalArgumentException("Too many unacknowledged tasks: " + outstanding + ".");
+        }
+        final int size = 1 << (32 - Integer.numberOfLeadingZeros((int) window - 1));
+        this.mask = size - 1;
+        this.done = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            done.lazySet(i, -1);
+        }
+        markGaps();
+        this.flusher = new Thread(this::flushLoop, "Journal-flusher-" + directory.getName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 扫描所有段，收集序号不小于start的记录，删除其中已全部被确认的段.
+     */
+    private List<Entry<T>> recover(long start) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        List<Entry<T>> result = new ArrayList<>();
+        if (files == null) {
+            return result;
+        }
+        //序号是定长的，所以文件名的顺序就是序号的顺序
+        Arrays.sort(files);
+        for (File file : files) {
+            Segment segment = new Segment(file, Math.max(segmentSize, (int) file.length()));
+            int position = 0;
+            int length;
+            while (position + HEADER <= segment.size && (length = segment.buffer.getInt(position)) >= HEADER &&
+                    position + length <= segment.size) {
+                long sequence = segment.buffer.getLong(position + 4);
+                if (sequence >= start) {
+                    segment.buffer.limit(position + length).position(position + HEADER);
+                    result.add(new Entry<>(sequence, codec.decode(segment.buffer)));
+                    segment.buffer.limit(segment.size);
+                }
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                segment.lastSequence = sequence;
+                position += length;
+            }
+            segment.writePosition = position;
+            segments.addLast(segment);
+        }
+        //只保留最后一个段用于继续写入，其余的在全部被确认之后删除
+        while (segments.size() > 1 && segments.peekFirst().lastSequence() < start) {
+            segments.pollFirst().delete();
+        }
+        return result;
+    }
+
+    /**
+     * 没有被写入日志的序号(写入失败的任务)不会被恢复，直接标记为已确认，以免水位停滞.
+     */
+    private void markGaps() {
+        long expected = watermark.get();
+        for (Entry<T> entry : recovered) {
+            while (expected < entry.sequence) {
+                done.set((int) expected & mask, expected);
+                ++expected;
+            }
+            ++expected;
+        }
+        while (expected < nextSequence) {
+            done.set((int) expected & mask, expected);
+            ++expected;
+        }
+    }
+
+    /**
+     * 得到打开时恢复的、尚未被确认的任务，按序号排序.
+     */
+    public List<Entry<T>> recovered() {
+        return recovered;
+    }
+
+    /**
+     * 尝试分配一个序号并追加一条记录，但记录尚未生效，必须在锁内调用，并随后调用{@link #commit(long)}或者放弃.
+     *
+     * @return 分配的序号，如果未被确认的任务数已达到窗口大小，那么返回-1
+     * @throws IllegalArgumentException 如果任务编码后超过了段的大小
+     * @throws UncheckedIOException     如果创建段文件失败
+     */
+    long prepare(T task) {
+        final long sequence = nextSequence;
+        if (sequence - watermark.get() > mask) {
+            return -1;
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal has been closed.");
+        }
+        Segment segment = segments.peekLast();
+        if (segment == null || !segment.write(sequence, task)) {
+            segment = roll(sequence);
+            if (!segment.write(sequence, task)) {
+                throw new IllegalArgumentException("The encoded task is larger than the segment size " +
+                        segmentSize + ".");
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * 使{@link #prepare(Object)}追加的记录生效，必须在锁内调用.
+     */
+    void commit(long sequence) {
+        final int length = segments.peekLast().commit(sequence);
+        nextSequence = sequence + 1;
+        unflushedBytes += length;
+        if (unflushedBytes >= flushBytes) {
+            unflushedBytes = 0;
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * 分配一个不写入日志的序号(任务无法写入日志时)，必须在锁内调用.这样的任务不会被恢复.
+     *
+     * @return 分配的序号，如果未被确认的任务数已达到窗口大小，那么返回-1
+     */
+    long skip() {
+        final long sequence = nextSequence;
+        if (sequence - watermark.get() > mask) {
+            return -1;
+        }
+        nextSequence = sequence + 1;
+        return sequence;
+    }
+
+    /**
+     * 当前还可以分配的序号数.
+     */
+    int remaining() {
+        return (int) Math.max(0, mask + 1 - (nextSequence - watermark.get()));
+    }
+
+    private Segment roll(long firstSequence) {
+        Segment tail = segments.peekLast();
+        if (tail != null && !dirty.contains(tail)) {
+            dirty.add(tail);
+        }
+        String name = String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+        try {
+            Segment segment = new Segment(new File(directory, name), segmentSize);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 记录当前线程取出了一个任务，之后由{@link #acknowledge(int)}确认.
+     */
+    void dequeued(long sequence) {
+        pending.get().add(sequence);
+    }
+
+    /**
+     * 确认当前线程最早取出的count个任务已被处理.
+     */
+    public void acknowledge(int count) {
+        Pending p = pending.get();
+        for (int i = 0; i < count && !p.isEmpty(); i++) {
+            done(p.poll());
+        }
+    }
+
+    private void done(long sequence) {
+        done.set((int) sequence & mask, sequence);
+        long w;
+        while (done.get((int) (w = watermark.get()) & mask) == w && watermark.compareAndSet(w, w + 1)) ;
+    }
+
+    /**
+     * 得到第一个未被确认的序号.
+     */
+    public long getWatermark() {
+        return watermark.get();
+    }
+
+    /**
+     * 得到未被确认的任务数.
+     */
+    public long getOutstanding() {
+        return nextSequence - watermark.get();
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            if (closed) {
+                //close()已经刷盘，之后不再写入checkpoint
+                break;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                if (log != null) {
+                    log.error("Failed to flush the journal " + directory + ".", e);
+                }
+            }
+            if (closing && watermark.get() == nextSequence) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * 成组提交: force所有被写过的段，然后写入checkpoint，删除已全部被确认的段.
+     */
+    public void flush() {
+        final List<Segment> toForce;
+        lock.lock();
+        try {
+            Segment tail = segments.peekLast();
+            if (tail != null && !dirty.contains(tail)) {
+                dirty.add(tail);
+            }
+            toForce = new ArrayList<>(dirty);
+            dirty.clear();
+            unflushedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        for (Segment segment : toForce) {
+            segment.buffer.force();
+        }
+        final long w = watermark.get();
+        if (checkpoint.getLong(0) != w) {
+            checkpoint.putLong(0, w);
+            checkpoint.force();
+        }
+        lock.lock();
+        try {
+            while (segments.size() > 1 && segments.peekFirst().lastSequence() < w) {
+                segments.pollFirst().delete();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 所有任务被确认之后再关闭，用于消费者的正常终结.
+     */
+    public void closeWhenDrained() {
+        closing = true;
+        LockSupport.unpark(flusher);
+    }
+
+    /**
+     * 刷盘并关闭，未被确认的任务在下次打开时被恢复.如果所有任务都已被确认，那么删除所有段文件.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != flusher) {
+            LockSupport.unpark(flusher);
+        }
+        flush();
+        lock.lock();
+        try {
+            final boolean drained = (watermark.get() == nextSequence);
+            for (Segment segment : segments) {
+                if (drained) {
+                    segment.delete();
+                } else {
+                    segment.close();
+                }
+            }
+            segments.clear();
+            checkpointFile.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 恢复的任务.
+     */
+    public static final class Entry<T> {
+
+        final long sequence;
+        final T task;
+
+        Entry(long sequence, T task) {
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public T getTask() {
+            return task;
+        }
+
+    }
+
+    /**
+     * 内存映射的段文件，只在锁内写入.
+     */
+    private final class Segment {
+
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private final int size;
+        private int writePosition = 0;
+        /**
+         * 已写入但尚未生效的记录长度.
+         */
+        private int prepared = 0;
+        private long lastSequence = -1;
+
+        private Segment(File file, int size) throws IOException {
+            this.file = file;
+            this.size = size;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * 写入记录的内容以及序号，但不写入记录长度.
+         *
+         * @return false, 如果剩余空间不足
+         */
+        private boolean write(long sequence, T task) {
+            if (size - writePosition < HEADER) {
+                return false;
+            }
+            buffer.limit(size).position(writePosition + HEADER);
+            try {
+                codec.encode(task, buffer);
+            } catch (BufferOverflowException e) {
+                return false;
+            }
+            prepared = buffer.position() - writePosition;
+            buffer.putLong(writePosition + 4, sequence);
+            return true;
+        }
+
+        /**
+         * 写入记录长度使记录生效.之前被放弃的记录可能在其后留下了残余的内容，所以先在其后写入结束标志0.
+         */
+        private int commit(long sequence) {
+            final int length = prepared;
+            if (writePosition + length + 4 <= size) {
+                buffer.putInt(writePosition + length, 0);
+            }
+            buffer.putInt(writePosition, length);
+            writePosition += length;
+            lastSequence = sequence;
+            prepared = 0;
+            return length;
+        }
+
+        /**
+         * 得到最后一条生效的记录的序号，空段返回-1.
+         */
+        private long lastSequence() {
+            return lastSequence;
+        }
+
+        private void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                //ignore
+            }
+        }
+
+        private void delete() {
+            close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+
+    }
+
+    /**
+     * 当前线程已取出但尚未确认的序号，按取出的顺序排列.
+     */
+    private static final class Pending {
+
+        private long[] sequences = new long[16];
+        private int head = 0;
+        private int tail = 0;
+
+        private void add(long sequence) {
+            if (tail - head == sequences.length) {
+                long[] grown = new long[sequences.length << 1];
+                for (int i = 0; i < sequences.length; i++) {
+                    grown[i] = sequences[(head + i) & (sequences.length - 1)];
+                }
+                tail -= head;
+                head = 0;
+                sequences = grown;
+            }
+            sequences[tail++ & (sequences.length - 1)] = sequence;
+        }
+
+        private boolean isEmpty() {
+            return head == tail;
+        }
+
+        private long poll() {
+            return sequences[head++ & (sequences.length - 1)];
+        }
+
+    }
+
+}
@@ -0,0 +1,153 @@
+package consumer.journal;
+
+import consumer.journal.Journal.Entry;
+import consumer.queue.SQueue;
+import consumer.util.Util;
+import org.slf4j.Logger;
+
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 写入{@link Journal}的{@link SQueue}: 入队的任务先写入日志再放入内存队列，取出任务的线程在处理完成后需调用
+ * {@link Journal#acknowledge(int)}进行确认.
+ * <p>日志打开时恢复的任务优先于内存队列中的任务被取出.</p>
+ *
+ * @author skywalker
+ */
+public class JournalingQueue<T> implements SQueue<T> {
+
+    private final Journal<T> journal;
+    private final SQueue<Entry<T>> queue;
+    private final ConcurrentLinkedQueue<Entry<T>> recovered;
+    private final AtomicInteger recoveredCount;
+    private final Logger log = Util.getLogger(this.getClass());
+
+    /**
+     * @param journal 日志
+     * @param queue   存放任务的内存队列，必须为空，并且只能通过此对象访问
+     */
+    @SuppressWarnings("unchecked")
+    public JournalingQueue(Journal<T> journal, SQueue<?> queue) {
+        Objects.requireNonNull(journal);
+        Objects.requireNonNull(queue);
+        this.journal = journal;
+        this.queue = (SQueue<Entry<T>>) queue;
+        this.recovered = new ConcurrentLinkedQueue<>(journal.recovered());
+        this.recoveredCount = new AtomicInteger(recovered.size());
+    }
+
+    /**
+     * 入队，先写入日志，如果内存队列已满或者未确认的任务过多，那么放弃写入的记录并返回false.
+     *
+     * @throws IllegalArgumentException 如果任务编码后超过了日志段的大小
+     * @throws UncheckedIOException     如果创建日志段失败
+     */
+    @Override
+    public boolean offer(T element) {
+        journal.lock.lock();
+        try {
+            long sequence = journal.prepare(element);
+            if (sequence < 0 || !queue.offer(new Entry<>(sequence, element))) {
+                return false;
+            }
+            journal.commit(sequence);
+            return true;
+        } finally {
+            journal.lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll() {
+        Entry<T> entry = pollRecovered();
+        if (entry == null && (entry = queue.poll()) == null) {
+            return null;
+        }
+        journal.dequeued(entry.sequence);
+        return entry.task;
+    }
+
+    private Entry<T> pollRecovered() {
+        if (recoveredCount.get() == 0) {
+            return null;
+        }
+        Entry<T> entry = recovered.poll();
+        if (entry != null) {
+            recoveredCount.decrementAndGet();
+        }
+        return entry;
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        Entry<T> entry;
+        while (count < limit && (entry = pollRecovered()) != null) {
+            journal.dequeued(entry.sequence);
+            sink.accept(entry.task);
+            ++count;
+        }
+        if (count < limit) {
+            count += queue.drain(e -> {
+                journal.dequeued(e.sequence);
+                sink.accept(e.task);
+            }, limit - count);
+        }
+        return count;
+    }
+
+    /**
+     * 批量入队，整个过程持有日志的锁.无法写入日志的任务(编码后超过段的大小或者创建段失败)仍被放入内存队列，
+     * 但不会被恢复.
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        journal.lock.lock();
+        try {
+            limit = Math.min(limit, journal.remaining());
+            return (limit <= 0 ? 0 : queue.fill(() -> append(supplier.get()), limit));
+        } finally {
+            journal.lock.unlock();
+        }
+    }
+
+    /**
+     * 内存队列的槽位已被认领，所以记录总是生效.
+     */
+    private Entry<T> append(T task) {
+        long sequence;
+        try {
+            sequence = journal.prepare(task);
+            journal.commit(sequence);
+        } catch (RuntimeException e) {
+            sequence = journal.skip();
+            if (log != null) {
+                log.error("Failed to write the task to the journal, it won't be recovered.", e);
+            }
+        }
+        return new Entry<>(sequence, task);
+    }
+
+    @Override
+    public int size() {
+        return queue.size() + recoveredCount.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (recoveredCount.get() == 0 && queue.isEmpty());
+    }
+
+    /**
+     * 得到使用的日志.
+     */
+    public Journal<T> getJournal() {
+        return journal;
+    }
+
+}
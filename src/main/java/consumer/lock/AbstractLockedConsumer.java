@@ -4,7 +4,9 @@ import consumer.AbstractQueuedConsumer;
 import consumer.Consumer;
 import consumer.queue.locked.ArrayQueue;
 import consumer.queue.SQueue;
+import consumer.util.RangeSupplier;
 
+import java.util.List;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -19,6 +21,10 @@ public abstract class AbstractLockedConsumer<T> extends AbstractQueuedConsumer<T
     private final Lock lock = new ReentrantLock();
     private final Condition empty = lock.newCondition();
     private final Condition full = lock.newCondition();
+    /**
+     * 批量获取任务时的缓冲区，任务在锁内取出，在锁外消费.
+     */
+    private T[] drained;
 
     public AbstractLockedConsumer(int queueSize) {
         super(queueSize);
@@ -56,6 +62,34 @@ public abstract class AbstractLockedConsumer<T> extends AbstractQueuedConsumer<T
         }
     }
 
+    @Override
+    public final int submitAll(T[] tasks, int from, int to) {
+        return submitAll(RangeSupplier.of(tasks, from, to));
+    }
+
+    @Override
+    public final int submitAll(List<T> tasks, int from, int to) {
+        return submitAll(RangeSupplier.of(tasks, from, to));
+    }
+
+    private int submitAll(RangeSupplier<T> supplier) {
+        int limit = supplier.remaining();
+        if (limit == 0) {
+            return 0;
+        }
+        int count;
+        lock.lock();
+        try {
+            count = jobQueue.fill(supplier, limit);
+            if (count > 0) {
+                empty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return count;
+    }
+
     @Override
     protected final T getTask() throws InterruptedException {
         T task;
@@ -73,6 +107,51 @@ public abstract class AbstractLockedConsumer<T> extends AbstractQueuedConsumer<T
         return task;
     }
 
+    @Override
+    protected final T getTask(long nanos) throws InterruptedException {
+        T task;
+        lock.lock();
+        try {
+            if ((task = jobQueue.poll()) == null && nanos > 0) {
+                empty.awaitNanos(nanos);
+            }
+            if (task != null) {
+                full.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return task;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected final int drainTasks(java.util.function.Consumer<T> sink, int limit) {
+        if (drained == null || drained.length < limit) {
+            drained = (T[]) new Object[limit];
+        }
+        final T[] buffer = drained;
+        int count = 0;
+        T task;
+        lock.lock();
+        try {
+            while (count < limit && (task = jobQueue.poll()) != null) {
+                buffer[count++] = task;
+            }
+            if (count > 0) {
+                full.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i < count; i++) {
+            task = buffer[i];
+            buffer[i] = null;
+            sink.accept(task);
+        }
+        return count;
+    }
+
     @Override
     protected final void doTerminate() {
         lock.lock();
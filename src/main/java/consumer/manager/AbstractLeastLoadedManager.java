@@ -0,0 +1,38 @@
+package consumer.manager;
+
+import consumer.AbstractQueuedConsumer;
+import consumer.util.LeastLoaded;
+
+/**
+ * {@link Manager}骨架实现，next方法随机选取两个被管理者，返回队列积压较少的那个，参见{@link LeastLoaded}.
+ *
+ * @author skywalker
+ */
+public abstract class AbstractLeastLoadedManager<T extends AbstractQueuedConsumer<?>> extends AbstractManager<T> {
+
+    private final boolean weighted;
+
+    /**
+     * @param weighted 是否按任务的平均处理时间加权
+     */
+    protected AbstractLeastLoadedManager(boolean weighted) {
+        this.weighted = weighted;
+    }
+
+    @Override
+    public boolean start() {
+        boolean result = super.start();
+        if (weighted) {
+            for (T slaver : slavers) {
+                slaver.setServiceTimeTracking(true);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T next() {
+        return LeastLoaded.choose(slavers, weighted);
+    }
+
+}
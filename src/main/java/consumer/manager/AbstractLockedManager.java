@@ -1,34 +1,21 @@
 package consumer.manager;
 
 import consumer.lifecycle.LifeCycle;
-
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import consumer.util.Cursor;
 
 /**
  * {@link Manager}骨架实现，线程安全的next方法.
+ * <p>每个调用线程使用自己的轮询游标，所以next()不需要加锁.</p>
  *
  * @author skywalker
  */
 public abstract class AbstractLockedManager<T extends LifeCycle> extends AbstractManager<T> {
 	
-	private final Lock lock = new ReentrantLock();
-    private int index = 0;
+	private final ThreadLocal<Cursor> cursor = ThreadLocal.withInitial(() -> new Cursor(Cursor.seed()));
 	
 	@Override
 	public T next() {
-		T result = null;
-		lock.lock();
-		try {
-			result = slavers.get(index);
-			++index;
-			if (index >= slaveCount) {
-				index = 0;
-			}
-		} finally {
-			lock.unlock();
-		}
-		return result;
+		return slavers.get(cursor.get().next(slaveCount));
 	}
 
 }
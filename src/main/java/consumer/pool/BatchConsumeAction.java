@@ -0,0 +1,27 @@
+package consumer.pool;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量消费消息的{@link ConsumeAction}，适用于批量处理代价远低于逐条处理的场景，比如数据库批量插入.
+ * <p>需配合{@link DefaultConsumerPool#setMicroBatch(int, long, java.util.concurrent.TimeUnit)}使用，
+ * 否则消息仍被逐条交给{@link #consume(Object)}.</p>
+ *
+ * @author skywalker
+ */
+public interface BatchConsumeAction<T> extends ConsumeAction<T> {
+
+    /**
+     * 批量消费.
+     *
+     * @param messages 本批次的消息，此列表会被复用，不应在方法返回后继续持有
+     */
+    void consumeBatch(List<T> messages);
+
+    @Override
+    default void consume(T message) {
+        consumeBatch(Collections.singletonList(message));
+    }
+
+}
@@ -23,4 +23,36 @@ public interface ConsumerPool<T> extends LifeCycle {
      */
     void release(Consumer<T> consumer);
 
+    /**
+     * 得到给定的key所固定对应的{@link Consumer}，相同的key总是对应同一个消费者(只要消费者数量不变).
+     * <p>只有{@link MultiThreadsConsumer}会参与分配，因为同一个key可能来自多个生产者.</p>
+     * <p>默认实现直接返回{@link #acquire()}，亲和性只是尽力而为，不保证相同的key对应同一个消费者.
+     * 支持按key路由的实现应覆盖此方法；如果acquire()所得的消费者需要释放，那么同样需要覆盖，
+     * 因为{@link #submit(Object, Object)}不会释放按key得到的消费者.</p>
+     *
+     * @param key 用于路由的key，比如实体的ID
+     * @return {@linkplain Consumer}
+     */
+    default Consumer<T> acquire(Object key) {
+        return acquire();
+    }
+
+    /**
+     * 按key提交任务，相同key的任务由同一个消费者处理，如果该消费者只有一个消费线程，那么这些任务将被按序处理.
+     *
+     * @return true, 如果提交成功
+     */
+    default boolean submit(Object key, T task) {
+        return acquire(key).submit(task);
+    }
+
+    /**
+     * 按key提交任务，如果提交失败那会将会一直等待，语义同{@link #submit(Object, Object)}.
+     *
+     * @throws InterruptedException 如果在提交时被中断
+     */
+    default void submitSync(Object key, T task) throws InterruptedException {
+        acquire(key).submitSync(task);
+    }
+
 }
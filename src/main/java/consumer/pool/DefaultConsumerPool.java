@@ -1,23 +1,32 @@
 package consumer.pool;
 
+import consumer.AbstractQueuedConsumer;
 import consumer.Consumer;
 import consumer.cas.AbstractSPCASConsumer;
 import consumer.cas.AbstractMPCASConsumer;
+import consumer.cas.backpressure.BackpressurePolicy;
 import consumer.cas.strategy.RetryStrategy;
+import consumer.codec.TaskCodec;
 import consumer.lifecycle.LifeCycle;
 import consumer.lifecycle.StateCheckDelegate;
 import consumer.pool.dispatch.DispatchStrategy;
+import consumer.pool.dispatch.DispatchStrategyFactory;
 import consumer.pool.dispatch.RoundRobinStrategy;
 import consumer.pool.dispatch.SingleProducerStrategy;
 import consumer.pool.internal.InternalMPConsumer;
 import consumer.pool.internal.InternalSPConsumer;
+import consumer.queue.Weigher;
+import consumer.timer.Timeout;
 import org.slf4j.Logger;
 import consumer.util.Util;
+import consumer.util.VirtualThreads;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
@@ -43,9 +52,36 @@ public class DefaultConsumerPool<T> implements ConsumerPool<T> {
     private final Logger log = Util.getLogger(this.getClass());
 
     private RetryStrategy<T> retryStrategy;
+    private BackpressurePolicy<T> backpressurePolicy;
     private ThreadNameGenerator threadNameGenerator;
     private Thread.UncaughtExceptionHandler handler;
     private DispatchStrategy<T> dispatchStrategy;
+    private DispatchStrategyFactory<T> dispatchStrategyFactory = RoundRobinStrategy::new;
+    private int batchSize = AbstractQueuedConsumer.DEFAULT_BATCH_SIZE;
+    private int microBatchSize = 0;
+    private long maxLingerNanos = 0;
+    private long stealIntervalNanos = 0;
+    private int minThreads = 0;
+    private int maxThreads = 0;
+    private int scaleUpThreshold;
+    private long keepAliveNanos;
+    private boolean virtualThreads = false;
+    private int initialCapacity = 0;
+    private File spillDirectory;
+    private int spillSegmentSize;
+    private TaskCodec<T> spillCodec;
+    private long weightBudget;
+    private Weigher<? super T> weigher;
+    private File journalDirectory;
+    private int journalSegmentSize;
+    private TaskCodec<T> journalCodec;
+    private long journalFlushNanos;
+    private int journalFlushBytes;
+    private int priorityLanes = 0;
+    private int[] laneWeights;
+    private long timerTickNanos = 0;
+    private int timerTicks;
+    private java.util.function.Consumer<? super T> expiryHandler;
 
     private volatile State state = State.INIT;
 
@@ -93,7 +129,17 @@ public class DefaultConsumerPool<T> implements ConsumerPool<T> {
                 }
                 list.add(mpConsumer);
             }
-            dispatchStrategy = new RoundRobinStrategy<>(list);
+            dispatchStrategy = dispatchStrategyFactory.newStrategy(list);
+        }
+        if (stealIntervalNanos > 0) {
+            List<AbstractSPCASConsumer<T>> siblings = new ArrayList<>(list.size());
+            for (Consumer<T> consumer : list) {
+                siblings.add((AbstractSPCASConsumer<T>) consumer);
+            }
+            siblings = Collections.unmodifiableList(siblings);
+            for (AbstractSPCASConsumer<T> consumer : siblings) {
+                consumer.setSiblings(siblings);
+            }
         }
         this.state = State.RUNNING;
         return true;
@@ -107,9 +153,52 @@ public class DefaultConsumerPool<T> implements ConsumerPool<T> {
         if (retryStrategy != null) {
             consumer.setRetryStrategy(retryStrategy.copy());
         }
+        if (backpressurePolicy != null) {
+            consumer.setBackpressurePolicy(backpressurePolicy.copy());
+        }
         if (handler != null) {
             consumer.setUncaughtExceptionHandler(handler);
         }
+        consumer.setBatchSize(batchSize);
+        if (stealIntervalNanos > 0) {
+            consumer.setWorkStealing(stealIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+        if (virtualThreads) {
+            consumer.setVirtualThreads(true);
+        }
+        if (initialCapacity > 0) {
+            consumer.setGrowable(initialCapacity);
+        }
+        if (spillCodec != null) {
+            consumer.setSpill(spillDirectory, spillSegmentSize, spillCodec);
+        }
+        if (weigher != null) {
+            consumer.setWeightBudget(weightBudget, weigher);
+        }
+        if (timerTickNanos > 0) {
+            consumer.setTimer(timerTickNanos, TimeUnit.NANOSECONDS, timerTicks);
+        }
+        if (priorityLanes > 0) {
+            if (laneWeights != null) {
+                consumer.setPriorityLanes(laneWeights);
+            } else {
+                consumer.setPriorityLanes(priorityLanes);
+            }
+        }
+        if (journalCodec != null) {
+            //消费者的创建顺序是固定的，所以重启后每个消费者恢复的仍是自己的日志
+            consumer.setJournal(new File(journalDirectory, "consumer-" + list.size()), journalSegmentSize, journalCodec,
+                    journalFlushNanos, TimeUnit.NANOSECONDS, journalFlushBytes);
+        }
+        if (maxThreads > 0) {
+            consumer.setElasticThreads(minThreads, maxThreads, scaleUpThreshold, keepAliveNanos, TimeUnit.NANOSECONDS);
+        }
+        if (expiryHandler != null) {
+            consumer.setExpiryHandler(expiryHandler);
+        }
+        if (microBatchSize > 0) {
+            consumer.setMicroBatch(microBatchSize, maxLingerNanos, TimeUnit.NANOSECONDS);
+        }
     }
 
     @Override
@@ -168,6 +257,82 @@ public class DefaultConsumerPool<T> implements ConsumerPool<T> {
         return dispatchStrategy.acquire();
     }
 
+    /**
+     * 多生产者模式下，key在所有消费者之间分配；单生产者模式下只有一个多生产者消费者，所以所有key都会分配给它.
+     */
+    @Override
+    public Consumer<T> acquire(Object key) {
+        delegate.checkRunning(this);
+        return dispatchStrategy.acquire(key);
+    }
+
+    /**
+     * 提交给{@link #acquire(Object)}所对应消费者的专属队列，开启工作窃取时也不会被其它消费者窃取.
+     */
+    @Override
+    public boolean submit(Object key, T task) {
+        return ((AbstractSPCASConsumer<T>) acquire(key)).submitPinned(task);
+    }
+
+    @Override
+    public void submitSync(Object key, T task) throws InterruptedException {
+        ((AbstractSPCASConsumer<T>) acquire(key)).submitPinnedSync(task);
+    }
+
+    /**
+     * 提交到{@link #acquire()}所得消费者的给定优先级通道，参见{@link AbstractSPCASConsumer#submitWithPriority(Object, int)}.
+     *
+     * @throws IllegalStateException 如果没有开启优先级通道
+     */
+    public boolean submitWithPriority(T task, int priority) {
+        final Consumer<T> consumer = acquire();
+        try {
+            return ((AbstractSPCASConsumer<T>) consumer).submitWithPriority(task, priority);
+        } finally {
+            release(consumer);
+        }
+    }
+
+    /**
+     * 提交到{@link #acquire()}所得消费者的给定优先级通道，如果通道已满，那么交给{@link BackpressurePolicy}处理.
+     *
+     * @throws IllegalStateException 如果没有开启优先级通道
+     */
+    public void submitSyncWithPriority(T task, int priority) throws InterruptedException {
+        final Consumer<T> consumer = acquire();
+        try {
+            ((AbstractSPCASConsumer<T>) consumer).submitSyncWithPriority(task, priority);
+        } finally {
+            release(consumer);
+        }
+    }
+
+    /**
+     * 延迟提交给{@link #acquire()}所得的消费者，参见{@link AbstractSPCASConsumer#submitDelayed(Object, long, TimeUnit)}.
+     */
+    public Timeout submitDelayed(T task, long delay, TimeUnit unit) {
+        final Consumer<T> consumer = acquire();
+        try {
+            return ((AbstractSPCASConsumer<T>) consumer).submitDelayed(task, delay, unit);
+        } finally {
+            release(consumer);
+        }
+    }
+
+    /**
+     * 在给定的时间提交给{@link #acquire()}所得的消费者，参见{@link AbstractSPCASConsumer#submitAt(Object, long)}.
+     *
+     * @param deadline 到期时间，以{@link System#nanoTime()}为基准
+     */
+    public Timeout submitAt(T task, long deadline) {
+        final Consumer<T> consumer = acquire();
+        try {
+            return ((AbstractSPCASConsumer<T>) consumer).submitAt(task, deadline);
+        } finally {
+            release(consumer);
+        }
+    }
+
     @Override
     public void release(Consumer<T> consumer) {
         dispatchStrategy.release(consumer);
@@ -186,6 +351,22 @@ public class DefaultConsumerPool<T> implements ConsumerPool<T> {
         this.retryStrategy = retryStrategy;
     }
 
+    /**
+     * 得到设置的{@link BackpressurePolicy}，各消费者使用的是它的拷贝，但与它共享统计数据.
+     */
+    @SuppressWarnings("unused")
+    public BackpressurePolicy<T> getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    public void setBackpressurePolicy(BackpressurePolicy<T> backpressurePolicy) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set BackpressurePolicy when the state is " + state + ".");
+        }
+        Objects.requireNonNull(backpressurePolicy);
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
     @SuppressWarnings("unused")
     public void setThreadNameGenerator(ThreadNameGenerator threadNameGenerator) {
         if (state != State.INIT) {
@@ -209,6 +390,286 @@ public class DefaultConsumerPool<T> implements ConsumerPool<T> {
         this.handler = handler;
     }
 
+    @SuppressWarnings("unused")
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置每个消费线程每次唤醒后最多连续消费的任务数.
+     */
+    @SuppressWarnings("unused")
+    public void setBatchSize(int batchSize) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set batchSize when the state is " + state + ".");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The param batchSize must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 开启微批次消费，如果{@link ConsumeActionFactory}生成的是{@link BatchConsumeAction}，那么消息将被攒成批次交给
+     * {@link BatchConsumeAction#consumeBatch(List)}，批次达到maxBatchSize或等待超过maxLinger时触发.
+     */
+    @SuppressWarnings("unused")
+    public void setMicroBatch(int maxBatchSize, long maxLinger, TimeUnit unit) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set micro batch when the state is " + state + ".");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The param maxBatchSize must be positive.");
+        }
+        if (maxLinger < 0) {
+            throw new IllegalArgumentException("The param maxLinger can't be negative.");
+        }
+        Objects.requireNonNull(unit);
+        this.microBatchSize = maxBatchSize;
+        this.maxLingerNanos = unit.toNanos(maxLinger);
+    }
+
+    /**
+     * 设置多生产者模式下使用的{@link DispatchStrategy}，默认为{@link RoundRobinStrategy}.单生产者模式下总是使用
+     * {@link SingleProducerStrategy}.
+     */
+    @SuppressWarnings("unused")
+    public void setDispatchStrategyFactory(DispatchStrategyFactory<T> dispatchStrategyFactory) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set DispatchStrategyFactory when the state is " + state + ".");
+        }
+        Objects.requireNonNull(dispatchStrategyFactory);
+        this.dispatchStrategyFactory = dispatchStrategyFactory;
+    }
+
+    /**
+     * 各消费者使用可增长的队列，构造器中的queueSize为最大容量，参见{@link AbstractSPCASConsumer#setGrowable(int)}.
+     */
+    @SuppressWarnings("unused")
+    public void setGrowable(int initialCapacity) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set growable queue when the state is " + state + ".");
+        }
+        if (initialCapacity < 8) {
+            throw new IllegalArgumentException("The param initialCapacity must be at least 8.");
+        }
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * 各消费者的队列已满时将任务溢出到directory下的段文件，参见{@link AbstractSPCASConsumer#setSpill(File, int, TaskCodec)}.
+     */
+    @SuppressWarnings("unused")
+    public void setSpill(File directory, int segmentSize, TaskCodec<T> codec) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set spill when the state is " + state + ".");
+        }
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(codec);
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The param segmentSize must be positive.");
+        }
+        AbstractSPCASConsumer.checkModes(journalCodec != null, stealIntervalNanos > 0, true, priorityLanes > 0, false);
+        this.spillDirectory = directory;
+        this.spillSegmentSize = segmentSize;
+        this.spillCodec = codec;
+    }
+
+    /**
+     * 按任务的总权重限制各消费者的队列容量，参见{@link AbstractSPCASConsumer#setWeightBudget(long, Weigher)}.
+     *
+     * @param budget 每个消费者队列的权重上限
+     */
+    @SuppressWarnings("unused")
+    public void setWeightBudget(long budget, Weigher<? super T> weigher) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set weight budget when the state is " + state + ".");
+        }
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The param budget must be positive.");
+        }
+        Objects.requireNonNull(weigher);
+        this.weightBudget = budget;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 各消费者开启过期检查，参见{@link AbstractQueuedConsumer#setExpiryHandler(java.util.function.Consumer)}.
+     *
+     * @param handler 过期任务的处理者，被各消费者的消费线程并发调用
+     */
+    @SuppressWarnings("unused")
+    public void setExpiryHandler(java.util.function.Consumer<? super T> handler) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set expiry handler when the state is " + state + ".");
+        }
+        Objects.requireNonNull(handler);
+        this.expiryHandler = handler;
+    }
+
+    /**
+     * 得到所有消费者因过期而跳过的任务数之和.
+     */
+    public long getExpiredCount() {
+        long count = 0;
+        for (Consumer<T> consumer : list) {
+            count += ((AbstractQueuedConsumer<T>) consumer).getExpiredCount();
+        }
+        return count;
+    }
+
+    /**
+     * 设置各消费者延迟任务所使用的时间轮，参见{@link AbstractSPCASConsumer#setTimer(long, TimeUnit, int)}.
+     */
+    @SuppressWarnings("unused")
+    public void setTimer(long tick, TimeUnit unit, int ticksPerWheel) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set timer when the state is " + state + ".");
+        }
+        if (tick <= 0) {
+            throw new IllegalArgumentException("The param tick must be positive.");
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("The param ticksPerWheel must be positive.");
+        }
+        Objects.requireNonNull(unit);
+        this.timerTickNanos = unit.toNanos(tick);
+        this.timerTicks = ticksPerWheel;
+    }
+
+    /**
+     * 各消费者开启严格优先级的通道，参见{@link AbstractSPCASConsumer#setPriorityLanes(int)}.
+     */
+    @SuppressWarnings("unused")
+    public void setPriorityLanes(int lanes) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set priority lanes when the state is " + state + ".");
+        }
+        if (lanes < 1) {
+            throw new IllegalArgumentException("The param lanes must be positive.");
+        }
+        AbstractSPCASConsumer.checkModes(journalCodec != null, stealIntervalNanos > 0, spillCodec != null, true, false);
+        this.priorityLanes = lanes;
+        this.laneWeights = null;
+    }
+
+    /**
+     * 各消费者开启加权公平的优先级通道，参见{@link AbstractSPCASConsumer#setPriorityLanes(int[])}.
+     */
+    @SuppressWarnings("unused")
+    public void setPriorityLanes(int[] weights) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set priority lanes when the state is " + state + ".");
+        }
+        Objects.requireNonNull(weights);
+        if (weights.length == 0) {
+            throw new IllegalArgumentException("The param weights can't be empty.");
+        }
+        for (int weight : weights) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("The param weights must be positive.");
+            }
+        }
+        AbstractSPCASConsumer.checkModes(journalCodec != null, stealIntervalNanos > 0, spillCodec != null, true, false);
+        this.priorityLanes = weights.length;
+        this.laneWeights = weights.clone();
+    }
+
+    /**
+     * 各消费者开启预写日志，日志位于directory下以消费者序号命名的子目录中，
+     * 参见{@link AbstractSPCASConsumer#setJournal(File, int, TaskCodec, long, TimeUnit, int)}.
+     * <p>重启时消费者的数量需保持不变，否则按key提交的任务可能被恢复到其它消费者中.
+     * 通过{@link #submitDelayed(Object, long, TimeUnit)}以及{@link #submitAt(Object, long)}提交的延迟任务不会被写入日志.</p>
+     */
+    @SuppressWarnings("unused")
+    public void setJournal(File directory, int segmentSize, TaskCodec<T> codec, long flushInterval, TimeUnit unit,
+                           int flushBytes) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set journal when the state is " + state + ".");
+        }
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(unit);
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The param segmentSize must be positive.");
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("The param flushInterval must be positive.");
+        }
+        if (flushBytes <= 0) {
+            throw new IllegalArgumentException("The param flushBytes must be positive.");
+        }
+        AbstractSPCASConsumer.checkModes(true, stealIntervalNanos > 0, spillCodec != null, priorityLanes > 0, false);
+        this.journalDirectory = directory;
+        this.journalSegmentSize = segmentSize;
+        this.journalCodec = codec;
+        this.journalFlushNanos = unit.toNanos(flushInterval);
+        this.journalFlushBytes = flushBytes;
+    }
+
+    /**
+     * 各消费者使用虚拟线程(JDK 21+)作为消费线程，参见{@link AbstractQueuedConsumer#setVirtualThreads(boolean)}.
+     *
+     * @throws UnsupportedOperationException 如果当前JDK不支持虚拟线程
+     */
+    @SuppressWarnings("unused")
+    public void setVirtualThreads(boolean virtualThreads) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set virtual threads when the state is " + state + ".");
+        }
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later.");
+        }
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 开启各消费者消费线程的弹性伸缩，开启后构造器中的consumerThreads参数被忽略，
+     * 参见{@link AbstractSPCASConsumer#setElasticThreads(int, int, int, long, TimeUnit)}.
+     */
+    @SuppressWarnings("unused")
+    public void setElasticThreads(int minThreads, int maxThreads, int scaleUpThreshold, long keepAlive, TimeUnit unit) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set elastic threads when the state is " + state + ".");
+        }
+        if (minThreads < 1) {
+            throw new IllegalArgumentException("The param minThreads must be positive.");
+        }
+        if (maxThreads < minThreads) {
+            throw new IllegalArgumentException("The param maxThreads can't be less than minThreads.");
+        }
+        if (scaleUpThreshold < 0) {
+            throw new IllegalArgumentException("The param scaleUpThreshold can't be negative.");
+        }
+        if (keepAlive <= 0) {
+            throw new IllegalArgumentException("The param keepAlive must be positive.");
+        }
+        Objects.requireNonNull(unit);
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.scaleUpThreshold = scaleUpThreshold;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+    }
+
+    /**
+     * 开启工作窃取，空闲的消费线程会从积压最多的消费者处窃取任务，参见
+     * {@link AbstractSPCASConsumer#setWorkStealing(long, TimeUnit)}.
+     * <p>按key提交的任务需使用{@link #submit(Object, Object)}，这些任务不会被窃取；直接提交给
+     * {@link #acquire(Object)}所返回的消费者的任务则可能被窃取.</p>
+     */
+    @SuppressWarnings("unused")
+    public void setWorkStealing(long scanInterval, TimeUnit unit) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set work stealing when the state is " + state + ".");
+        }
+        if (scanInterval <= 0) {
+            throw new IllegalArgumentException("The param scanInterval must be positive.");
+        }
+        Objects.requireNonNull(unit);
+        AbstractSPCASConsumer.checkModes(journalCodec != null, true, spillCodec != null, priorityLanes > 0, false);
+        this.stealIntervalNanos = unit.toNanos(scanInterval);
+    }
+
     @SuppressWarnings("unused")
     public ThreadNameGenerator getThreadNameGenerator() {
         return threadNameGenerator;
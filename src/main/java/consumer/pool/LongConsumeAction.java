@@ -0,0 +1,17 @@
+package consumer.pool;
+
+/**
+ * 消费long消息，语义同{@link ConsumeAction}，应和{@link LongConsumerPool}配合使用.
+ *
+ * @author skywalker
+ */
+public interface LongConsumeAction {
+
+    /**
+     * 消费.
+     *
+     * @param message 消息
+     */
+    void consume(long message);
+
+}
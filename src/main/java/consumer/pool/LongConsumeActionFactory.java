@@ -0,0 +1,15 @@
+package consumer.pool;
+
+/**
+ * {@link LongConsumeAction}工厂.
+ *
+ * @author skywalker
+ */
+public interface LongConsumeActionFactory {
+
+    /**
+     * 生成一个新的{@link LongConsumeAction}.
+     */
+    LongConsumeAction newAction();
+
+}
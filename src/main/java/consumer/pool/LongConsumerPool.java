@@ -0,0 +1,142 @@
+package consumer.pool;
+
+import consumer.LongConsumer;
+import consumer.lifecycle.LifeCycle;
+import consumer.lifecycle.StateCheckDelegate;
+import consumer.pool.dispatch.ConsistentHashRing;
+import consumer.pool.internal.InternalLongConsumer;
+import consumer.util.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * long消息的消费者池，语义同{@link DefaultConsumerPool}的多生产者模式，提交与消费均不装箱.
+ * <p>消费者均为{@link InternalLongConsumer}，按轮询或者按key分配.</p>
+ *
+ * @author skywalker
+ */
+public class LongConsumerPool implements LifeCycle {
+
+    private final int consumers;
+    private final int threads;
+    private final int queueSize;
+    private final LongConsumeActionFactory factory;
+    private final StateCheckDelegate delegate = StateCheckDelegate.getInstance();
+    private final List<InternalLongConsumer> list;
+    private final ThreadLocal<Cursor> cursor = ThreadLocal.withInitial(() -> new Cursor(Cursor.seed()));
+
+    private ConsistentHashRing<InternalLongConsumer> ring;
+    private ThreadNameGenerator threadNameGenerator;
+    private Thread.UncaughtExceptionHandler handler;
+
+    private volatile State state = State.INIT;
+
+    public LongConsumerPool(int number, int consumerThreads, int queueSize, LongConsumeActionFactory factory) {
+        Objects.requireNonNull(factory);
+        this.consumers = number;
+        this.threads = consumerThreads;
+        this.queueSize = queueSize;
+        this.factory = factory;
+        this.list = new ArrayList<>(number);
+    }
+
+    @Override
+    public boolean start() {
+        delegate.checkStart(this);
+        for (int i = 0; i < consumers; i++) {
+            InternalLongConsumer consumer = new InternalLongConsumer(queueSize, threads, factory, threadNameGenerator);
+            if (handler != null) {
+                consumer.setUncaughtExceptionHandler(handler);
+            }
+            if (!consumer.start()) {
+                return false;
+            }
+            list.add(consumer);
+        }
+        this.ring = new ConsistentHashRing<>(list);
+        this.state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * 轮询得到一个消费者.
+     */
+    public LongConsumer acquire() {
+        return list.get(cursor.get().next(consumers));
+    }
+
+    /**
+     * 得到给定的key所固定对应的消费者，相同的key总是对应同一个消费者.
+     */
+    public LongConsumer acquire(long key) {
+        return ring.getLong(key);
+    }
+
+    /**
+     * 按key提交任务，相同key的任务由同一个消费者处理.
+     *
+     * @return true, 如果提交成功
+     */
+    public boolean submit(long key, long task) {
+        return acquire(key).submit(task);
+    }
+
+    /**
+     * 按key提交任务，如果队列已满那么一直等待.
+     */
+    public void submitSync(long key, long task) throws InterruptedException {
+        acquire(key).submitSync(task);
+    }
+
+    @Override
+    public Future<Void> terminate() {
+        return terminateHelper(LifeCycle::terminate);
+    }
+
+    @Override
+    public Future<Void> terminateNow() {
+        return terminateHelper(LifeCycle::terminateNow);
+    }
+
+    /**
+     * terminate()和terminateNow()辅助方法，{@link InternalLongConsumer}返回的均为{@link CompletableFuture}.
+     */
+    private Future<Void> terminateHelper(Function<LongConsumer, Future<Void>> function) {
+        delegate.checkTerminated(this);
+        this.state = State.TERMINATED;
+        final CompletableFuture<?>[] futures = new CompletableFuture[list.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = (CompletableFuture<?>) function.apply(list.get(i));
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    @SuppressWarnings("unused")
+    public void setThreadNameGenerator(ThreadNameGenerator threadNameGenerator) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set ThreadNameGenerator when the state is " + state + ".");
+        }
+        Objects.requireNonNull(threadNameGenerator);
+        this.threadNameGenerator = threadNameGenerator;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHandler(Thread.UncaughtExceptionHandler handler) {
+        if (state != State.INIT) {
+            throw new IllegalStateException("Can't set UncaughtExceptionHandler when the state is " + state + ".");
+        }
+        Objects.requireNonNull(handler);
+        this.handler = handler;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+}
@@ -1,22 +1,42 @@
 package consumer.pool.dispatch;
 
 import consumer.Consumer;
-import consumer.pool.dispatch.DispatchStrategy;
+import consumer.MultiThreadsConsumer;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
 
 /**
- * 屏蔽掉{@link consumer.lifecycle.LifeCycle}的相关方法.
+ * 屏蔽掉{@link consumer.lifecycle.LifeCycle}的相关方法，并基于{@link ConsistentHashRing}提供按key的分配.
  *
  * @author skywalker
  */
 public abstract class AbstractDispatchStrategy<T> implements DispatchStrategy<T> {
 
     protected final List<Consumer<T>> consumers;
+    /**
+     * 由所有{@link MultiThreadsConsumer}组成的哈希环.
+     */
+    private final ConsistentHashRing<Consumer<T>> ring;
 
     protected AbstractDispatchStrategy(List<Consumer<T>> consumers) {
         this.consumers = consumers;
+        List<Consumer<T>> multi = new ArrayList<>(consumers.size());
+        for (Consumer<T> consumer : consumers) {
+            if (consumer instanceof MultiThreadsConsumer) {
+                multi.add(consumer);
+            }
+        }
+        this.ring = (multi.isEmpty() ? null : new ConsistentHashRing<>(multi));
+    }
+
+    @Override
+    public Consumer<T> acquire(Object key) {
+        if (ring == null) {
+            throw new UnsupportedOperationException("There is no MultiThreadsConsumer to dispatch keys to.");
+        }
+        return ring.get(key);
     }
 
     @Override
@@ -0,0 +1,90 @@
+package consumer.pool.dispatch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 一致性哈希环，每个节点在环上有多个虚拟节点，节点数量变化时只有少部分key会被映射到其它节点.
+ * <p>创建之后不可变，所以是线程安全的，查找为一次二分查找.</p>
+ *
+ * @author skywalker
+ */
+public final class ConsistentHashRing<N> {
+
+    /**
+     * 每个节点默认的虚拟节点数.
+     */
+    public static final int DEFAULT_REPLICAS = 160;
+
+    private final long[] hashes;
+    private final Object[] nodes;
+
+    public ConsistentHashRing(List<? extends N> nodes) {
+        this(nodes, DEFAULT_REPLICAS);
+    }
+
+    /**
+     * @param nodes    节点，节点在列表中的下标即其标识，所以新增的节点应追加在末尾
+     * @param replicas 每个节点的虚拟节点数
+     */
+    public ConsistentHashRing(List<? extends N> nodes, int replicas) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("The param nodes can't be empty.");
+        }
+        if (replicas < 1) {
+            throw new IllegalArgumentException("The param replicas must be positive.");
+        }
+        final int size = nodes.size() * replicas;
+        //每个虚拟节点为{哈希值, 节点下标}，按哈希值排序
+        final long[][] points = new long[size][];
+        for (int i = 0, n = nodes.size(); i < n; i++) {
+            for (int r = 0; r < replicas; r++) {
+                points[i * replicas + r] = new long[]{mix(((long) i << 32) | r), i};
+            }
+        }
+        Arrays.sort(points, (a, b) -> Long.compare(a[0], b[0]));
+        this.hashes = new long[size];
+        this.nodes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.hashes[i] = points[i][0];
+            this.nodes[i] = nodes.get((int) points[i][1]);
+        }
+    }
+
+    /**
+     * 得到给定的key所映射的节点，即环上顺时针方向第一个虚拟节点所属的节点.
+     */
+    public N get(Object key) {
+        return locate(mix(Objects.hashCode(key)));
+    }
+
+    /**
+     * 得到long类型的key所对应的节点，不装箱，结果与{@link #get(Object)}传入{@link Long}时相同.
+     */
+    public N getLong(long key) {
+        return locate(mix(Long.hashCode(key)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private N locate(long hash) {
+        int index = Arrays.binarySearch(hashes, hash);
+        if (index < 0) {
+            index = -index - 1;
+            if (index == hashes.length) {
+                index = 0;
+            }
+        }
+        return (N) nodes[index];
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb3fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
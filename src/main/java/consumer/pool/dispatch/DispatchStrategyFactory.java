@@ -0,0 +1,19 @@
+package consumer.pool.dispatch;
+
+import consumer.Consumer;
+
+import java.util.List;
+
+/**
+ * {@link DispatchStrategy}工厂，应配合{@link consumer.pool.DefaultConsumerPool}使用.
+ *
+ * @author skywalker
+ */
+public interface DispatchStrategyFactory<T> {
+
+    /**
+     * 为已经启动的消费者生成一个新的{@link DispatchStrategy}.
+     */
+    DispatchStrategy<T> newStrategy(List<Consumer<T>> consumers);
+
+}
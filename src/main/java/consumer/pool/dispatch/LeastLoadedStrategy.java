@@ -0,0 +1,58 @@
+package consumer.pool.dispatch;
+
+import consumer.AbstractQueuedConsumer;
+import consumer.Consumer;
+import consumer.util.LeastLoaded;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DispatchStrategy}实现，随机选取两个消费者，使用队列积压较少的那个，参见{@link LeastLoaded}.
+ * <p>适用于任务处理时间差异较大的场景，可避免轮询时慢任务导致的队头阻塞.</p>
+ *
+ * @author skywalker
+ */
+public class LeastLoadedStrategy<T> extends AbstractDispatchStrategy<T> {
+
+    private final List<AbstractQueuedConsumer<T>> candidates;
+    private final boolean weighted;
+
+    /**
+     * @param consumers 必须为{@link AbstractQueuedConsumer}
+     * @param weighted  是否按任务的平均处理时间加权，如果是，那么将开启各消费者的处理时间统计
+     */
+    public LeastLoadedStrategy(List<Consumer<T>> consumers, boolean weighted) {
+        super(consumers);
+        this.weighted = weighted;
+        this.candidates = new ArrayList<>(consumers.size());
+        for (Consumer<T> consumer : consumers) {
+            if (!(consumer instanceof AbstractQueuedConsumer)) {
+                throw new IllegalArgumentException("LeastLoadedStrategy only supports AbstractQueuedConsumer.");
+            }
+            AbstractQueuedConsumer<T> queued = (AbstractQueuedConsumer<T>) consumer;
+            if (weighted) {
+                queued.setServiceTimeTracking(true);
+            }
+            candidates.add(queued);
+        }
+    }
+
+    /**
+     * 得到一个{@link DispatchStrategyFactory}.
+     */
+    public static <T> DispatchStrategyFactory<T> factory(boolean weighted) {
+        return consumers -> new LeastLoadedStrategy<>(consumers, weighted);
+    }
+
+    @Override
+    public Consumer<T> acquire() {
+        return LeastLoaded.choose(candidates, weighted);
+    }
+
+    @Override
+    public void release(Consumer<T> consumer) {
+        //nothing here
+    }
+
+}
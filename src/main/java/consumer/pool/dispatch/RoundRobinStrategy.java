@@ -1,37 +1,30 @@
 package consumer.pool.dispatch;
 
 import consumer.Consumer;
+import consumer.util.Cursor;
 
 import java.util.List;
 
 /**
  * 简单的轮询以决定使用的{@link consumer.Consumer}.
+ * <p>每个生产者线程使用自己的游标(初始位置错开)，所以acquire()不需要加锁，也不会在共享的计数器上产生竞争.</p>
  *
  * @author skywalker
  */
 public class RoundRobinStrategy<T> extends AbstractDispatchStrategy<T> {
 
-    private final Object monitor = new Object();
     private final int count;
-
-    private int index = 0;
+    private final ThreadLocal<Cursor> cursor;
 
     public RoundRobinStrategy(List<Consumer<T>> consumers) {
         super(consumers);
         this.count = consumers.size();
+        this.cursor = ThreadLocal.withInitial(() -> new Cursor(Cursor.seed()));
     }
 
     @Override
     public Consumer<T> acquire() {
-        Consumer<T> result;
-        synchronized (monitor) {
-            result = consumers.get(index);
-            ++index;
-            if (index >= count) {
-                index = 0;
-            }
-        }
-        return result;
+        return consumers.get(cursor.get().next(count));
     }
 
     @Override
@@ -2,26 +2,43 @@ package consumer.pool.dispatch;
 
 import consumer.Consumer;
 import consumer.MultiThreadsConsumer;
-import consumer.pool.internal.InternalSPConsumer;
 import consumer.util.Util;
 import org.slf4j.Logger;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  *  {@link DispatchStrategy}实现，用以处理单生产模型下的消费者分配.
+ *  <p>单生产者消费者的占用情况记录在一个位图中(1表示可用)，通过CAS申请和释放，不需要加锁.</p>
  *
  *  @author skywalker
  */
 public class SingleProducerStrategy<T> extends AbstractDispatchStrategy<T> {
 
-    private final Object monitor = new Object();
     private final int count;
     private final Logger log = Util.getLogger(this.getClass());
+    /**
+     * 前count - 1个消费者的空闲位图.
+     */
+    private final AtomicLongArray free;
+    /**
+     * 单生产者消费者到其下标的映射，创建后只读.
+     */
+    private final Map<Consumer<T>, Integer> indexes;
 
     public SingleProducerStrategy(List<Consumer<T>> consumers) {
         super(consumers);
         this.count = consumers.size();
+        final int spCount = count - 1;
+        this.free = new AtomicLongArray((spCount + 63) >>> 6);
+        this.indexes = new IdentityHashMap<>(spCount);
+        for (int i = 0; i < spCount; i++) {
+            free.set(i >>> 6, free.get(i >>> 6) | (1L << i));
+            indexes.put(consumers.get(i), i);
+        }
     }
 
     @Override
@@ -39,26 +56,29 @@ public class SingleProducerStrategy<T> extends AbstractDispatchStrategy<T> {
     @Override
     public void release(Consumer<T> consumer) {
         if (!(consumer instanceof MultiThreadsConsumer)) {
-            synchronized (monitor) {
-                InternalSPConsumer internal = (InternalSPConsumer) consumer;
-                internal.setAvailable(true);
+            Integer index = indexes.get(consumer);
+            if (index != null) {
+                final int word = index >>> 6;
+                final long mask = 1L << index;
+                long bits;
+                do {
+                    bits = free.get(word);
+                } while (!free.compareAndSet(word, bits, bits | mask));
             }
         }
     }
 
     private Consumer<T> acquireSPSC() {
-        Consumer<T> result = null;
-        synchronized (monitor) {
-            for (int i = 0; i < count - 1; i++) {
-                InternalSPConsumer<T> consumer = (InternalSPConsumer<T>) consumers.get(i);
-                if (consumer.isAvailable()) {
-                    result = consumer;
-                    consumer.setAvailable(false);
-                    break;
+        for (int word = 0, words = free.length(); word < words; word++) {
+            long bits;
+            while ((bits = free.get(word)) != 0) {
+                final long lowest = bits & -bits;
+                if (free.compareAndSet(word, bits, bits & ~lowest)) {
+                    return consumers.get((word << 6) + Long.numberOfTrailingZeros(lowest));
                 }
             }
         }
-        return result;
+        return null;
     }
 
     private MultiThreadsConsumer<T> acquireMPMC() {
@@ -0,0 +1,35 @@
+package consumer.pool.internal;
+
+import consumer.cas.AbstractLongCASConsumer;
+import consumer.pool.LongConsumeAction;
+import consumer.pool.LongConsumeActionFactory;
+import consumer.pool.ThreadNameGenerator;
+
+/**
+ * {@link AbstractLongCASConsumer}实现，将其consume方法委托给{@link LongConsumeAction#consume(long)}.
+ *
+ * @author skywalker
+ */
+public class InternalLongConsumer extends AbstractLongCASConsumer {
+
+    private final LongConsumeAction action;
+    private final ThreadNameGenerator threadNameGenerator;
+
+    public InternalLongConsumer(int queueSize, int threads, LongConsumeActionFactory factory,
+                                ThreadNameGenerator threadNameGenerator) {
+        super(queueSize, threads, true);
+        this.action = factory.newAction();
+        this.threadNameGenerator = threadNameGenerator;
+    }
+
+    @Override
+    public void consume(long task) {
+        action.consume(task);
+    }
+
+    @Override
+    protected String getThreadName(Thread t) {
+        return (threadNameGenerator == null ? super.getThreadName(t) : threadNameGenerator.generate(t));
+    }
+
+}
@@ -1,10 +1,13 @@
 package consumer.pool.internal;
 
 import consumer.cas.AbstractMPCASConsumer;
+import consumer.pool.BatchConsumeAction;
 import consumer.pool.ConsumeAction;
 import consumer.pool.ConsumeActionFactory;
 import consumer.pool.ThreadNameGenerator;
 
+import java.util.List;
+
 /**
  * {@link AbstractMPCASConsumer}实现，将其consume方法委托给{@link ConsumeAction#consume(Object)}.
  *
@@ -13,11 +16,13 @@ import consumer.pool.ThreadNameGenerator;
 public class InternalMPConsumer<T> extends AbstractMPCASConsumer<T> {
 
     private final ConsumeAction<T> action;
+    private final BatchConsumeAction<T> batchAction;
     private final ThreadNameGenerator threadNameGenerator;
 
     public InternalMPConsumer(int queueSize, int threads, ConsumeActionFactory<T> factory, ThreadNameGenerator threadNameGenerator) {
         super(queueSize, threads);
         this.action = factory.newAction();
+        this.batchAction = (action instanceof BatchConsumeAction ? (BatchConsumeAction<T>) action : null);
         this.threadNameGenerator = threadNameGenerator;
     }
 
@@ -26,6 +31,15 @@ public class InternalMPConsumer<T> extends AbstractMPCASConsumer<T> {
         action.consume(task);
     }
 
+    @Override
+    protected void consumeBatch(List<T> tasks) {
+        if (batchAction == null) {
+            super.consumeBatch(tasks);
+        } else {
+            batchAction.consumeBatch(tasks);
+        }
+    }
+
     @Override
     protected String getThreadName(Thread t) {
         return (threadNameGenerator == null ? super.getThreadName(t) : threadNameGenerator.generate(t));
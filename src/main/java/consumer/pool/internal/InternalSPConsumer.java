@@ -1,10 +1,13 @@
 package consumer.pool.internal;
 
 import consumer.cas.AbstractSPCASConsumer;
+import consumer.pool.BatchConsumeAction;
 import consumer.pool.ConsumeAction;
 import consumer.pool.ConsumeActionFactory;
 import consumer.pool.ThreadNameGenerator;
 
+import java.util.List;
+
 /**
  * {@link AbstractSPCASConsumer}实现，将其consume方法委托给{@link ConsumeAction#consume(Object)}.
  *
@@ -12,14 +15,14 @@ import consumer.pool.ThreadNameGenerator;
  */
 public class InternalSPConsumer<T> extends AbstractSPCASConsumer<T> {
 
-    private boolean available = true;
-
     private final ConsumeAction<T> action;
+    private final BatchConsumeAction<T> batchAction;
     private final ThreadNameGenerator threadNameGenerator;
 
     public InternalSPConsumer(int queueSize, int threads, ConsumeActionFactory<T> factory, ThreadNameGenerator threadNameGenerator) {
         super(queueSize, threads);
         this.action = factory.newAction();
+        this.batchAction = (action instanceof BatchConsumeAction ? (BatchConsumeAction<T>) action : null);
         this.threadNameGenerator = threadNameGenerator;
     }
 
@@ -29,16 +32,17 @@ public class InternalSPConsumer<T> extends AbstractSPCASConsumer<T> {
     }
 
     @Override
-    protected String getThreadName(Thread t) {
-        return (threadNameGenerator == null ? super.getThreadName(t) : threadNameGenerator.generate(t));
+    protected void consumeBatch(List<T> tasks) {
+        if (batchAction == null) {
+            super.consumeBatch(tasks);
+        } else {
+            batchAction.consumeBatch(tasks);
+        }
     }
 
-    public boolean isAvailable() {
-        return available;
-    }
-
-    public void setAvailable(boolean available) {
-        this.available = available;
+    @Override
+    protected String getThreadName(Thread t) {
+        return (threadNameGenerator == null ? super.getThreadName(t) : threadNameGenerator.generate(t));
     }
 
 }
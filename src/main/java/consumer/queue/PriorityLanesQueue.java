@@ -0,0 +1,284 @@
+package consumer.queue;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 由多个优先级通道组成的{@link SQueue}，每个通道是一个独立的队列，0为最高优先级.
+ * <p>取出任务时有两种选择方式:</p>
+ * <p>1. 严格优先级: 总是先取优先级高的通道，只有其为空时才取下一个.</p>
+ * <p>2. 加权公平: 按权重轮流服务各通道，每轮从一个通道最多连续取出其权重个任务，空的通道被跳过.
+ * 轮转的位置在多个消费线程之间共享，允许存在竞争，只影响公平的精度.</p>
+ * <p>{@link #offer(Object)}提交到优先级最低的通道，指定优先级时通过{@link #lane(int)}得到的通道提交.</p>
+ * <p>每个通道统计出队数以及排队延迟: 延迟通过采样得到，同一时刻每个通道最多跟踪一个入队的任务，
+ * 以其入队时的位置判断其何时出队，所以不需要为每个任务记录时间戳.</p>
+ *
+ * @author skywalker
+ */
+public class PriorityLanesQueue<T> implements SQueue<T> {
+
+    private final Lane[] lanes;
+    /**
+     * 各通道的权重，为null表示严格优先级.
+     */
+    private final int[] weights;
+    /**
+     * 加权公平模式下当前服务的通道以及其剩余的额度.
+     */
+    private int current = 0;
+    private int quota;
+
+    /**
+     * 严格优先级.
+     *
+     * @param queues 各通道的队列，下标即为优先级
+     */
+    public PriorityLanesQueue(SQueue<T>[] queues) {
+        this(queues, null);
+    }
+
+    /**
+     * @param queues  各通道的队列，下标即为优先级
+     * @param weights 各通道的权重，必须为正数，为null时采用严格优先级
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityLanesQueue(SQueue<T>[] queues, int[] weights) {
+        Objects.requireNonNull(queues);
+        if (queues.length == 0) {
+            throw new IllegalArgumentException("The param queues can't be empty.");
+        }
+        if (weights != null) {
+            if (weights.length != queues.length) {
+                throw new IllegalArgumentException("The length of weights must be equal to the number of lanes.");
+            }
+            for (int weight : weights) {
+                if (weight < 1) {
+                    throw new IllegalArgumentException("The param weights must be positive.");
+                }
+            }
+            this.weights = weights.clone();
+            this.quota = this.weights[0];
+        } else {
+            this.weights = null;
+        }
+        this.lanes = (Lane[]) new PriorityLanesQueue.Lane[queues.length];
+        for (int i = 0; i < queues.length; i++) {
+            lanes[i] = new Lane(Objects.requireNonNull(queues[i]));
+        }
+    }
+
+    /**
+     * 得到给定优先级的通道，向其提交的任务计入此队列.
+     *
+     * @throws IllegalArgumentException 如果priority超出了范围
+     */
+    public SQueue<T> lane(int priority) {
+        if (priority < 0 || priority >= lanes.length) {
+            throw new IllegalArgumentException("The param priority must be in [0, " + lanes.length + ").");
+        }
+        return lanes[priority];
+    }
+
+    /**
+     * 得到通道数.
+     */
+    public int getLanes() {
+        return lanes.length;
+    }
+
+    /**
+     * 提交到优先级最低的通道.
+     */
+    @Override
+    public boolean offer(T element) {
+        return lanes[lanes.length - 1].offer(element);
+    }
+
+    @Override
+    public T poll() {
+        if (weights == null) {
+            T task;
+            for (Lane lane : lanes) {
+                if ((task = lane.poll()) != null) {
+                    return task;
+                }
+            }
+            return null;
+        }
+        for (int i = 0; i <= lanes.length; i++) {
+            final int index = current;
+            T task = lanes[index].poll();
+            if (task != null) {
+                if (--quota <= 0) {
+                    next(index);
+                }
+                return task;
+            }
+            next(index);
+        }
+        return null;
+    }
+
+    private void next(int index) {
+        final int next = (index + 1 == lanes.length ? 0 : index + 1);
+        current = next;
+        quota = weights[next];
+    }
+
+    /**
+     * 严格优先级时按优先级依次批量取出；加权公平时每个通道最多连续取出其剩余额度个任务，
+     * 连续遇到一整轮空的通道时结束.
+     */
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        if (weights == null) {
+            for (int i = 0; i < lanes.length && count < limit; i++) {
+                count += lanes[i].drain(sink, limit - count);
+            }
+            return count;
+        }
+        int empty = 0;
+        while (count < limit && empty < lanes.length) {
+            final int index = current;
+            final int want = Math.min(Math.max(quota, 1), limit - count);
+            final int n = lanes[index].drain(sink, want);
+            count += n;
+            if (n < want || (quota -= n) <= 0) {
+                next(index);
+            }
+            empty = (n == 0 ? empty + 1 : 0);
+        }
+        return count;
+    }
+
+    /**
+     * 批量提交到优先级最低的通道.
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        return lanes[lanes.length - 1].fill(supplier, limit);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Lane lane : lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Lane lane : lanes) {
+            if (!lane.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 得到给定通道中的任务数.
+     */
+    public int getDepth(int priority) {
+        return ((Lane) lane(priority)).size();
+    }
+
+    /**
+     * 得到给定通道累计出队的任务数.
+     */
+    public long getDequeued(int priority) {
+        return ((Lane) lane(priority)).dequeued.get();
+    }
+
+    /**
+     * 得到给定通道采样的排队延迟(纳秒)的指数移动平均，尚无样本时返回0.
+     */
+    public long getLatencyNanos(int priority) {
+        return ((Lane) lane(priority)).latency;
+    }
+
+    /**
+     * 统计出队数以及排队延迟的通道.
+     */
+    private final class Lane implements SQueue<T> {
+
+        private static final long IDLE = -1L;
+        private static final long CLAIMED = -2L;
+
+        private final SQueue<T> queue;
+        private final AtomicLong dequeued = new AtomicLong();
+        /**
+         * 被跟踪的任务入队时的位置(累计出队数达到此值时其已出队)，IDLE表示没有跟踪的任务.
+         */
+        private final AtomicLong probe = new AtomicLong(IDLE);
+        private volatile long probeNanos;
+        private volatile long latency = 0;
+
+        private Lane(SQueue<T> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean offer(T element) {
+            if (!queue.offer(element)) {
+                return false;
+            }
+            if (probe.get() == IDLE && probe.compareAndSet(IDLE, CLAIMED)) {
+                probeNanos = System.nanoTime();
+                probe.set(dequeued.get() + queue.size());
+            }
+            return true;
+        }
+
+        @Override
+        public T poll() {
+            T task = queue.poll();
+            if (task != null) {
+                onDequeued(1);
+            }
+            return task;
+        }
+
+        @Override
+        public int drain(Consumer<? super T> sink, int limit) {
+            int count = queue.drain(sink, limit);
+            if (count > 0) {
+                onDequeued(count);
+            }
+            return count;
+        }
+
+        @Override
+        public int fill(Supplier<? extends T> supplier, int limit) {
+            return queue.fill(supplier, limit);
+        }
+
+        private void onDequeued(int count) {
+            final long total = dequeued.addAndGet(count);
+            final long target = probe.get();
+            if (target >= 0 && total >= target && probe.compareAndSet(target, CLAIMED)) {
+                final long sample = System.nanoTime() - probeNanos;
+                final long avg = latency;
+                latency = (avg == 0 ? sample : avg - (avg >> 3) + (sample >> 3));
+                probe.set(IDLE);
+            }
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+    }
+
+}
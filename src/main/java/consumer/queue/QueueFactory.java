@@ -0,0 +1,20 @@
+package consumer.queue;
+
+/**
+ * {@link SQueue}工厂，用于替换消费者默认使用的队列实现.
+ *
+ * @author skywalker
+ */
+@FunctionalInterface
+public interface QueueFactory<T> {
+
+    /**
+     * 创建队列.
+     *
+     * @param capacity      消费者构造器中的queueSize
+     * @param multiProducer 队列是否需要支持多个生产者
+     * @param multiConsumer 队列是否需要支持多个消费者
+     */
+    SQueue<T> newQueue(int capacity, boolean multiProducer, boolean multiConsumer);
+
+}
@@ -1,5 +1,8 @@
 package consumer.queue;
 
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * 队列接口.
  * 
@@ -27,5 +30,41 @@ public interface SQueue<T> {
      * 当前队列是否为空.
      */
 	boolean isEmpty();
+
+    /**
+     * 批量取出元素并交给sink处理，最多取出limit个.默认实现逐个调用{@link #poll()}.
+     *
+     * @param sink  元素的接收者
+     * @param limit 最多取出的元素数量
+     * @return 实际取出的元素数量，如果当前没有可用的元素，那么返回0
+     */
+    default int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        T element;
+        while (count < limit && (element = poll()) != null) {
+            sink.accept(element);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * 批量添加元素，元素由supplier依次提供，最多添加limit个.实现应尽量一次性申请空间，然后再逐个发布.
+     * <p>supplier最多比返回值多被调用一次: 无法预先判断是否有空位的实现(比如默认实现，或者元素的大小只有在编码之后
+     * 才能知道的队列)在最后一个元素添加失败时已经取出了它，该元素被丢弃，调用者应以返回值为准，
+     * 按supplier的调用次数计数的包装类需扣除最后一次调用.</p>
+     * <p>默认实现逐个调用{@link #offer(Object)}.jctools队列的包装类覆盖了此方法，只在确定可以添加时才调用supplier.</p>
+     *
+     * @param supplier 元素的提供者，不能提供null
+     * @param limit    最多添加的元素数量
+     * @return 实际添加的元素数量
+     */
+    default int fill(Supplier<? extends T> supplier, int limit) {
+        int count = 0;
+        while (count < limit && offer(supplier.get())) {
+            ++count;
+        }
+        return count;
+    }
 	
 }
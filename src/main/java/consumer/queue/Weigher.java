@@ -0,0 +1,19 @@
+package consumer.queue;
+
+/**
+ * 计算任务的权重(比如字节数)，用于按总权重限制队列的容量.
+ * <p>同一任务的权重必须保持不变，因为出队时会重新计算以归还额度.</p>
+ *
+ * @author skywalker
+ */
+@FunctionalInterface
+public interface Weigher<T> {
+
+    /**
+     * 计算任务的权重.
+     *
+     * @return 不能为负数
+     */
+    int weigh(T task);
+
+}
@@ -0,0 +1,193 @@
+package consumer.queue;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 按总权重限制容量的{@link SQueue}装饰器: 队列中任务的权重之和(由{@link Weigher}计算)不超过budget，
+ * 达到时offer返回false，由调用者的队列已满策略处理.被装饰队列自身按数量的容量限制仍然有效.
+ * <p>已占用的额度由两个分段计数器({@link LongAdder})记录: 生产者累加入队的权重，消费者累加出队的权重，
+ * 所以生产者之间以及生产者与消费者之间不会竞争同一个缓存行.{@link #offer(Object)}在入队前检查两者之差，
+ * 检查与累加不是原子的，所以并发的生产者最多共同超出各自正在提交的任务的权重；计数本身是精确的，
+ * 线程空闲或者退出时不会带走任何额度.消费线程在{@link #drain(Consumer, int)}中按批次归还额度.
+ * 为了保证进展，队列为空时总是接受任务，即使超过了剩余额度(比如单个任务超过budget).</p>
+ *
+ * @author skywalker
+ */
+public class WeightedQueue<T> implements SQueue<T> {
+
+    private final SQueue<T> queue;
+    private final Weigher<? super T> weigher;
+    private final long budget;
+    /**
+     * 累计入队以及出队的权重，两者之差为已占用的额度.
+     */
+    private final LongAdder charged = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    /**
+     * drain/fill时的适配器，每个线程一个，以免每次调用都创建新的对象，调用结束之后不持有任何额度.
+     */
+    private final ThreadLocal<Batch> batches = ThreadLocal.withInitial(Batch::new);
+
+    /**
+     * @param queue   被装饰的队列
+     * @param weigher 权重计算方式
+     * @param budget  权重之和的上限，必须为正数
+     */
+    public WeightedQueue(SQueue<T> queue, Weigher<? super T> weigher, long budget) {
+        Objects.requireNonNull(queue);
+        Objects.requireNonNull(weigher);
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The param budget must be positive.");
+        }
+        this.queue = queue;
+        this.weigher = weigher;
+        this.budget = budget;
+    }
+
+    /**
+     * 得到已占用的额度.先读出队的权重，所以并发出队时结果只会偏大，不会因此超额接受.
+     */
+    private long used() {
+        final long out = released.sum();
+        return charged.sum() - out;
+    }
+
+    private int weigh(T task) {
+        int weight = weigher.weigh(task);
+        if (weight < 0) {
+            throw new IllegalArgumentException("The weight can't be negative: " + weight + ".");
+        }
+        return weight;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        final int weight = weigh(element);
+        //队列为空时超额接受
+        if (used() + weight > budget && !queue.isEmpty()) {
+            return false;
+        }
+        charged.add(weight);
+        if (!queue.offer(element)) {
+            charged.add(-weight);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        T task = queue.poll();
+        if (task != null) {
+            released.add(weigh(task));
+        }
+        return task;
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        final Batch batch = batches.get();
+        batch.sink = sink;
+        try {
+            return queue.drain(batch, limit);
+        } finally {
+            batch.sink = null;
+            if (batch.weight > 0) {
+                released.add(batch.weight);
+                batch.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * 批量添加.任务的权重只有在被提供之后才能知道，所以只在批次开始前检查是否还有额度，整个批次都会被接受，
+     * 最多超过一个批次的权重.
+     * <p>被装饰队列的supplier可能比其返回值多被调用一次(最后一个任务未被接受)，所以只扣除被接受的任务的权重.</p>
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        if (used() >= budget && !queue.isEmpty()) {
+            return 0;
+        }
+        final Batch batch = batches.get();
+        batch.supplier = supplier;
+        int count = 0;
+        try {
+            count = queue.fill(batch, limit);
+            return count;
+        } finally {
+            batch.supplier = null;
+            long weight = batch.weight;
+            if (batch.supplied > count) {
+                //最后一个被提供的任务未被接受
+                weight -= batch.last;
+            }
+            if (weight > 0) {
+                charged.add(weight);
+            }
+            batch.weight = 0;
+            batch.supplied = 0;
+            batch.last = 0;
+        }
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * 得到权重之和的上限.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * 得到剩余额度，超额接受任务时为负数.drain期间已被取出的任务的权重在批次结束后才被归还，
+     * 有并发的入队或者出队时只是一个近似值.
+     */
+    public long getAvailable() {
+        return budget - used();
+    }
+
+    /**
+     * drain/fill时的适配器，累计一个批次中取出或者添加的任务的权重.
+     */
+    private final class Batch implements Consumer<T>, Supplier<T> {
+
+        private long weight = 0;
+        /**
+         * fill时supplier被调用的次数以及最后一个任务的权重.
+         */
+        private int supplied = 0;
+        private int last = 0;
+        private Consumer<? super T> sink;
+        private Supplier<? extends T> supplier;
+
+        @Override
+        public void accept(T task) {
+            weight += weigh(task);
+            sink.accept(task);
+        }
+
+        @Override
+        public T get() {
+            T task = supplier.get();
+            last = weigh(task);
+            weight += last;
+            ++supplied;
+            return task;
+        }
+
+    }
+
+}
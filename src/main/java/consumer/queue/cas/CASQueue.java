@@ -2,117 +2,245 @@ package consumer.queue.cas;
 
 import consumer.queue.SQueue;
 
-import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static consumer.util.UnsafeAccess.UNSAFE;
 
 /**
- * {@link SQueue}实现，基于CAS无锁操作.用于测试目的.
+ * 左侧填充，使{@link CASQueue}的写下标与对象头以及之前的对象不在同一缓存行.
+ */
+abstract class CASQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+}
+
+abstract class CASQueueWriteIndex extends CASQueuePad0 {
+    volatile long writeIndex;
+}
+
+/**
+ * 写下标与读下标之间的填充，避免生产者与消费者之间的伪共享.
+ */
+abstract class CASQueuePad1 extends CASQueueWriteIndex {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+}
+
+abstract class CASQueueReadIndex extends CASQueuePad1 {
+    volatile long readIndex;
+}
+
+/**
+ * 右侧填充，使读下标与之后的字段以及其它对象不在同一缓存行.
+ */
+abstract class CASQueuePad2 extends CASQueueReadIndex {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+}
+
+/**
+ * 多生产者多消费者的有界{@link SQueue}实现，基于CAS无锁操作，可作为{@link MpmcBasedQueue}之外的选择.
+ * <p>每个槽位有一个序号(Vyukov): 槽位可写时序号等于写下标，发布后等于写下标 + 1，被取出后等于读下标 + capacity，
+ * 即下一圈可写.生产者/消费者只在序号符合预期时才CAS对应的下标，所以消费者不会认领一个尚未发布的槽位，
+ * 也就不需要在其上自旋等待(生产者在CAS之后被挂起也不会阻塞消费者).</p>
+ * <p>读写下标通过类继承进行填充，各占一个缓存行.</p>
  *
  * @author skywalker
  */
-class CASQueue<T> implements SQueue<T> {
-
-    private final T[] array;
-    private final long[] pad1 = new long[8];
-    private volatile long readIndex = 0;
-    private final long[] pad2 = new long[8];
-    private volatile long writeIndex = 0;
-    private final long[] pad3 = new long[8];
+public class CASQueue<T> extends CASQueuePad2 implements SQueue<T> {
+
+    private static final long WRITE_INDEX_OFFSET;
+    private static final long READ_INDEX_OFFSET;
+    private static final long ELEMENT_BASE;
+    private static final int ELEMENT_SHIFT;
+    private static final long SEQUENCE_BASE;
+    private static final int SEQUENCE_SHIFT;
+
+    static {
+        try {
+            WRITE_INDEX_OFFSET = UNSAFE.objectFieldOffset(CASQueueWriteIndex.class.getDeclaredField("writeIndex"));
+            READ_INDEX_OFFSET = UNSAFE.objectFieldOffset(CASQueueReadIndex.class.getDeclaredField("readIndex"));
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+        ELEMENT_BASE = UNSAFE.arrayBaseOffset(Object[].class);
+        ELEMENT_SHIFT = shift(UNSAFE.arrayIndexScale(Object[].class));
+        SEQUENCE_BASE = UNSAFE.arrayBaseOffset(long[].class);
+        SEQUENCE_SHIFT = shift(UNSAFE.arrayIndexScale(long[].class));
+    }
+
+    private final Object[] elements;
+    private final long[] sequences;
     private final int capacity;
     private final long mask;
-    private final int arrayBaseOffset;
-    private final int arrayPointerOffset;
-    private final AtomicLongFieldUpdater<CASQueue> readIndexUpdater =
-            AtomicLongFieldUpdater.newUpdater(CASQueue.class, "readIndex");
-    private final AtomicLongFieldUpdater<CASQueue> writeIndexUpdater =
-            AtomicLongFieldUpdater.newUpdater(CASQueue.class, "writeIndex");
 
+    /**
+     * @param capacity 容量，会被向上取整为2的幂
+     */
     public CASQueue(int capacity) {
         if (capacity < 1) {
             throw new IllegalArgumentException("The param capacity must be bigger than 0.");
         }
-        if (!isPowerOfTwo(capacity)) {
-            throw new IllegalArgumentException("The param capacity must be power of 2.");
+        this.capacity = (capacity == 1 ? 1 : 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1)));
+        this.mask = this.capacity - 1;
+        this.elements = new Object[this.capacity];
+        this.sequences = new long[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            sequences[i] = i;
         }
-        this.array = (T[]) new Object[capacity];
-        this.capacity = capacity;
-        this.mask = capacity - 1;
-        this.arrayBaseOffset = UNSAFE.arrayBaseOffset(Object[].class);
-        int scale = UNSAFE.arrayIndexScale(Object[].class);
+        UNSAFE.storeFence();
+    }
+
+    private static int shift(int scale) {
         if (scale == 4) {
-            this.arrayPointerOffset = 2;
+            return 2;
         } else if (scale == 8) {
-            this.arrayPointerOffset = 3;
-        } else {
-            throw new IllegalStateException("Unkown pointer size: " + scale);
+            return 3;
         }
+        throw new IllegalStateException("Unknown pointer size: " + scale);
     }
 
-    /**
-     * 判断给定的数字是否是2的整次幂.
-     */
-    private boolean isPowerOfTwo(int n) {
-        return ((n & (n - 1)) == 0);
+    private long elementOffset(long index) {
+        return ELEMENT_BASE + ((index & mask) << ELEMENT_SHIFT);
+    }
+
+    private long sequenceOffset(long index) {
+        return SEQUENCE_BASE + ((index & mask) << SEQUENCE_SHIFT);
+    }
+
+    private long sequence(long index) {
+        return UNSAFE.getLongVolatile(sequences, sequenceOffset(index));
     }
 
     @Override
     public boolean offer(T element) {
-        long index = 0;
+        long index;
+        long sequence;
         do {
             index = writeIndex;
-            if ((index - readIndex) == capacity) {
+            sequence = sequence(index);
+            if (sequence < index) {
+                //上一圈的元素尚未被取出
                 return false;
             }
-        } while (!writeIndexUpdater.compareAndSet(this, index, index + 1));
-        long offset = calOffset(index);
-        UNSAFE.putOrderedObject(array, offset, element);
+        } while (sequence != index || !UNSAFE.compareAndSwapLong(this, WRITE_INDEX_OFFSET, index, index + 1));
+        UNSAFE.putObject(elements, elementOffset(index), element);
+        UNSAFE.putOrderedLong(sequences, sequenceOffset(index), index + 1);
         return true;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public T poll() {
-        long index = 0;
+        long index;
+        long sequence;
         do {
             index = readIndex;
-            if (index >= writeIndex) {
+            sequence = sequence(index);
+            if (sequence < index + 1) {
+                //为空，或者生产者尚未发布
                 return null;
             }
-        } while (!readIndexUpdater.compareAndSet(this, index, index + 1));
-        long offset = calOffset(index);
-        T result = (T) UNSAFE.getObjectVolatile(array, offset);
-        if (result == null) {
-            //生产者尚未完成element保存
-            do {
-                result = (T) UNSAFE.getObjectVolatile(array, offset);
-            } while (result == null);
-        }
+        } while (sequence != index + 1 || !UNSAFE.compareAndSwapLong(this, READ_INDEX_OFFSET, index, index + 1));
+        return (T) take(index);
+    }
+
+    /**
+     * 取出已认领的槽位中的元素，并将槽位交给下一圈的生产者.
+     */
+    private Object take(long index) {
+        final long offset = elementOffset(index);
+        Object result = UNSAFE.getObject(elements, offset);
+        UNSAFE.putObject(elements, offset, null);
+        UNSAFE.putOrderedLong(sequences, sequenceOffset(index), index + capacity);
         return result;
     }
 
     /**
-     * 计算给定的索引在数组中的偏移.
+     * 统计从readIndex开始连续已发布的槽位，然后通过一次CAS认领整个区间.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super T> sink, int limit) {
+        long index;
+        int n;
+        do {
+            index = readIndex;
+            n = 0;
+            while (n < limit && sequence(index + n) == index + n + 1) {
+                ++n;
+            }
+            if (n == 0) {
+                return 0;
+            }
+        } while (!UNSAFE.compareAndSwapLong(this, READ_INDEX_OFFSET, index, index + n));
+        for (int i = 0; i < n; i++) {
+            sink.accept((T) take(index + i));
+        }
+        return n;
+    }
+
+    /**
+     * 统计从writeIndex开始连续可写的槽位，然后通过一次CAS认领整个区间，再逐个发布.
      */
-    private long calOffset(long index) {
-        return (arrayBaseOffset + ((index & mask) << arrayPointerOffset));
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        long index;
+        int n;
+        do {
+            index = writeIndex;
+            n = 0;
+            while (n < limit && sequence(index + n) == index + n) {
+                ++n;
+            }
+            if (n == 0) {
+                return 0;
+            }
+        } while (!UNSAFE.compareAndSwapLong(this, WRITE_INDEX_OFFSET, index, index + n));
+        for (int i = 0; i < n; i++) {
+            long current = index + i;
+            UNSAFE.putObject(elements, elementOffset(current), supplier.get());
+            UNSAFE.putOrderedLong(sequences, sequenceOffset(current), current + 1);
+        }
+        return n;
     }
 
+    /**
+     * 在两个下标并发变化时得到一个一致的大小，包含已认领但尚未发布的元素.
+     */
     @Override
     public int size() {
-        return (int) (writeIndex - readIndex);
+        long after = readIndex;
+        long before, write;
+        do {
+            before = after;
+            write = writeIndex;
+            after = readIndex;
+        } while (before != after);
+        return (int) Math.max(0, Math.min(capacity, write - after));
     }
 
+    /**
+     * 当前是否没有可以取出的元素.
+     */
     @Override
     public boolean isEmpty() {
-        return (readIndex >= writeIndex);
+        final long index = readIndex;
+        return (sequence(index) != index + 1);
+    }
+
+    /**
+     * 得到容量.
+     */
+    public int capacity() {
+        return capacity;
     }
 
     @Override
     public String toString() {
         return "CASQueue{" +
-                "array=" + Arrays.toString(array) +
-                ", readIndex=" + readIndex +
+                "readIndex=" + readIndex +
                 ", writeIndex=" + writeIndex +
                 ", capacity=" + capacity +
                 '}';
@@ -0,0 +1,34 @@
+package consumer.queue.cas;
+
+/**
+ * 可增长队列的参数检查.
+ *
+ * @author skywalker
+ */
+final class ChunkedQueues {
+
+    /**
+     * 最小的块大小，{@link org.jctools.queues.SpscChunkedArrayQueue}的要求.
+     */
+    static final int MIN_CHUNK = 8;
+    /**
+     * 最小的最大容量，{@link org.jctools.queues.SpscChunkedArrayQueue}的要求.
+     */
+    static final int MIN_MAX_CAPACITY = 16;
+
+    private ChunkedQueues() {
+    }
+
+    static void checkCapacity(int initialCapacity, int maxCapacity) {
+        if (initialCapacity < MIN_CHUNK) {
+            throw new IllegalArgumentException("The param initialCapacity must be at least " + MIN_CHUNK + ".");
+        }
+        if (maxCapacity < MIN_MAX_CAPACITY) {
+            throw new IllegalArgumentException("The param maxCapacity must be at least " + MIN_MAX_CAPACITY + ".");
+        }
+        if (Integer.highestOneBit(initialCapacity - 1) >= Integer.highestOneBit(maxCapacity - 1)) {
+            throw new IllegalArgumentException("The param initialCapacity must be less than maxCapacity.");
+        }
+    }
+
+}
@@ -3,6 +3,9 @@ package consumer.queue.cas;
 import consumer.queue.SQueue;
 import org.jctools.queues.MpscArrayQueue;
 
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * {@link SQueue}无锁实现，将逻辑委托给{@link org.jctools.queues.MpscArrayQueue}.
  *
@@ -39,4 +42,14 @@ public class MpscBasedQueue<T> implements SQueue<T> {
         return queue.isEmpty();
     }
 
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        return queue.drain(sink::accept, limit);
+    }
+
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        return queue.fill(supplier::get, limit);
+    }
+
 }
@@ -0,0 +1,62 @@
+package consumer.queue.cas;
+
+import consumer.queue.SQueue;
+import org.jctools.queues.MpscChunkedArrayQueue;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 可增长的{@link SQueue}无锁实现，将逻辑委托给{@link org.jctools.queues.MpscChunkedArrayQueue}.
+ * <p>初始只分配initialCapacity大小的块，已满时链接新的块，直到maxCapacity，消费者越过的块可被回收.</p>
+ *
+ * @author skywalker
+ */
+public class MpscChunkedBasedQueue<T> implements SQueue<T> {
+
+    private final MpscChunkedArrayQueue<T> queue;
+
+    public MpscChunkedBasedQueue(int initialCapacity, int maxCapacity) {
+        ChunkedQueues.checkCapacity(initialCapacity, maxCapacity);
+        this.queue = new MpscChunkedArrayQueue<T>(initialCapacity, maxCapacity);
+    }
+
+    @Override
+    public boolean offer(T element) {
+        return queue.offer(element);
+    }
+
+    @Override
+    public T poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        return queue.drain(sink::accept, limit);
+    }
+
+    /**
+     * jctools的fill每次最多填满当前块(以及触发一次扩容)，所以需要重复调用直到没有进展.
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        int count = 0;
+        int n;
+        while (count < limit && (n = queue.fill(supplier::get, limit - count)) > 0) {
+            count += n;
+        }
+        return count;
+    }
+
+}
@@ -3,6 +3,9 @@ package consumer.queue.cas;
 import org.jctools.queues.SpscArrayQueue;
 import consumer.queue.SQueue;
 
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * {@link consumer.queue.SQueue}无锁实现，将逻辑委托给{@link org.jctools.queues.SpscArrayQueue}.
  *
@@ -39,4 +42,14 @@ public class SpscBasedQueue<T> implements SQueue<T> {
         return queue.isEmpty();
     }
 
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        return queue.drain(sink::accept, limit);
+    }
+
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        return queue.fill(supplier::get, limit);
+    }
+
 }
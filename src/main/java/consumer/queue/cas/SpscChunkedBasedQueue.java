@@ -0,0 +1,69 @@
+package consumer.queue.cas;
+
+import consumer.queue.SQueue;
+import org.jctools.queues.SpscChunkedArrayQueue;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 可增长的{@link SQueue}无锁实现，将逻辑委托给{@link org.jctools.queues.SpscChunkedArrayQueue}.
+ * <p>初始只分配initialCapacity大小的块，已满时链接新的块，直到maxCapacity，消费者越过的块可被回收.</p>
+ *
+ * @author skywalker
+ */
+public class SpscChunkedBasedQueue<T> implements SQueue<T> {
+
+    private final SpscChunkedArrayQueue<T> queue;
+    private final int capacity;
+
+    public SpscChunkedBasedQueue(int initialCapacity, int maxCapacity) {
+        ChunkedQueues.checkCapacity(initialCapacity, maxCapacity);
+        this.queue = new SpscChunkedArrayQueue<T>(initialCapacity, maxCapacity);
+        this.capacity = 1 << (32 - Integer.numberOfLeadingZeros(maxCapacity - 1));
+    }
+
+    @Override
+    public boolean offer(T element) {
+        return queue.offer(element);
+    }
+
+    @Override
+    public T poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        T element;
+        while (count < limit && (element = queue.poll()) != null) {
+            sink.accept(element);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * 只有一个生产者，所以根据当前大小算出的空间一定可以容纳.
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        final int count = Math.min(limit, capacity - queue.size());
+        for (int i = 0; i < count; i++) {
+            queue.offer(supplier.get());
+        }
+        return Math.max(count, 0);
+    }
+
+}
@@ -0,0 +1,83 @@
+package consumer.queue.cas;
+
+import consumer.queue.SQueue;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 支持工作窃取的{@link SQueue}，由两个队列组成:
+ * <p>1. shared: 普通提交的任务，可以被其它消费者窃取，所以必须支持多消费者.</p>
+ * <p>2. pinned: 按key提交的任务，只能由所属的消费者处理，以保证相同key的任务的顺序.</p>
+ * <p>{@link #offer(Object)}/{@link #fill(Supplier, int)}作用于shared，所属消费者的{@link #poll()}/
+ * {@link #drain(Consumer, int)}优先处理pinned.</p>
+ *
+ * @author skywalker
+ */
+public class StealableQueue<T> implements SQueue<T> {
+
+    private final SQueue<T> shared;
+    private final SQueue<T> pinned;
+
+    public StealableQueue(SQueue<T> shared, SQueue<T> pinned) {
+        this.shared = shared;
+        this.pinned = pinned;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        return shared.offer(element);
+    }
+
+    @Override
+    public T poll() {
+        T element = pinned.poll();
+        return (element == null ? shared.poll() : element);
+    }
+
+    @Override
+    public int size() {
+        return shared.size() + pinned.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return pinned.isEmpty() && shared.isEmpty();
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = pinned.drain(sink, limit);
+        if (count < limit) {
+            count += shared.drain(sink, limit - count);
+        }
+        return count;
+    }
+
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        return shared.fill(supplier, limit);
+    }
+
+    /**
+     * 供其它消费者窃取任务，只会取出shared中的任务.
+     */
+    public int steal(Consumer<? super T> sink, int limit) {
+        return shared.drain(sink, limit);
+    }
+
+    /**
+     * 可以被窃取的任务数.
+     */
+    public int stealableSize() {
+        return shared.size();
+    }
+
+    /**
+     * 只能由所属消费者处理的队列.
+     */
+    public SQueue<T> pinned() {
+        return pinned;
+    }
+
+}
@@ -2,6 +2,9 @@ package consumer.queue.locked;
 
 import consumer.queue.SQueue;
 
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * 用数组实现的队列，非线程安全.
  *
@@ -47,7 +50,11 @@ public final class ArrayQueue<T> implements SQueue<T> {
 
     @Override
     public int size() {
-        return capacity;
+        if (isEmpty()) {
+            return 0;
+        }
+        int size = writeIndex - readIndex;
+        return (size <= 0 ? size + capacity : size);
     }
 
     @Override
@@ -55,4 +62,29 @@ public final class ArrayQueue<T> implements SQueue<T> {
         return readIndex == writeIndex && array[readIndex] == null;
     }
 
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        T element;
+        while (count < limit && (element = array[readIndex]) != null) {
+            array[readIndex] = null;
+            ++readIndex;
+            readIndex = (readIndex == capacity ? 0 : readIndex);
+            ++count;
+            sink.accept(element);
+        }
+        return count;
+    }
+
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        int count = 0;
+        while (count < limit && array[writeIndex] == null) {
+            array[writeIndex++] = supplier.get();
+            writeIndex = (writeIndex == capacity ? 0 : writeIndex);
+            ++count;
+        }
+        return count;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package consumer.queue.locked;
+
+import consumer.Deadlined;
+import consumer.queue.QueueFactory;
+import consumer.queue.SQueue;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 按截止时间排列任务的有界队列(earliest deadline first): 截止时间最早的{@link Deadlined}任务最先被取出，
+ * 截止时间相同以及没有实现{@link Deadlined}的任务按提交顺序排在最后.
+ * <p>基于数组实现的二叉堆，截止时间与提交序号存放在long数组中，所以入队与出队都不分配对象，时间复杂度为O(log n).
+ * 线程安全，生产者与消费者之间通过锁同步；{@link #drain(Consumer, int)}只在锁内取出任务，在锁外交给sink.</p>
+ * <p>消费者可以通过{@link #factory()}以及{@link consumer.cas.AbstractSPCASConsumer#setQueueFactory(QueueFactory)}
+ * 使用此队列，通常配合{@link consumer.AbstractQueuedConsumer#setExpiryHandler(Consumer)}跳过已经过期的任务.</p>
+ *
+ * @author skywalker
+ */
+public final class EdfQueue<T> implements SQueue<T> {
+
+    /**
+     * 没有截止时间的任务使用的值，排在所有截止时间之后.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final Object[] tasks;
+    private final long[] deadlines;
+    private final long[] sequences;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long sequence = 0;
+    private volatile int size = 0;
+
+    public EdfQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The param capacity must be positive.");
+        }
+        this.tasks = new Object[capacity];
+        this.deadlines = new long[capacity];
+        this.sequences = new long[capacity];
+    }
+
+    /**
+     * 得到创建此队列的{@link QueueFactory}，容量为消费者的queueSize.
+     */
+    public static <T> QueueFactory<T> factory() {
+        return (queueSize, multiProducer, multiConsumer) -> new EdfQueue<>(queueSize);
+    }
+
+    private static long deadlineOf(Object task) {
+        return (task instanceof Deadlined ? ((Deadlined) task).getDeadline() : NO_DEADLINE);
+    }
+
+    /**
+     * 下标i的元素是否应排在j之前.截止时间按{@link System#nanoTime()}的方式比较，以免溢出.
+     */
+    private boolean before(int i, int j) {
+        final long a = deadlines[i];
+        final long b = deadlines[j];
+        if (a != b) {
+            if (a == NO_DEADLINE || b == NO_DEADLINE) {
+                return b == NO_DEADLINE;
+            }
+            return a - b < 0;
+        }
+        return sequences[i] < sequences[j];
+    }
+
+    private void swap(int i, int j) {
+        final Object task = tasks[i];
+        tasks[i] = tasks[j];
+        tasks[j] = task;
+        final long deadline = deadlines[i];
+        deadlines[i] = deadlines[j];
+        deadlines[j] = deadline;
+        final long seq = sequences[i];
+        sequences[i] = sequences[j];
+        sequences[j] = seq;
+    }
+
+    /**
+     * 在锁内入队.
+     */
+    private boolean push(T element) {
+        int index = size;
+        if (index == tasks.length) {
+            return false;
+        }
+        tasks[index] = element;
+        deadlines[index] = deadlineOf(element);
+        sequences[index] = sequence++;
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (!before(index, parent)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+        size = size + 1;
+        return true;
+    }
+
+    /**
+     * 在锁内出队.
+     */
+    @SuppressWarnings("unchecked")
+    private T pop() {
+        final int n = size - 1;
+        if (n < 0) {
+            return null;
+        }
+        final T result = (T) tasks[0];
+        swap(0, n);
+        tasks[n] = null;
+        int index = 0;
+        while (true) {
+            final int left = (index << 1) + 1;
+            if (left >= n) {
+                break;
+            }
+            final int right = left + 1;
+            final int child = (right < n && before(right, left) ? right : left);
+            if (!before(child, index)) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+        size = n;
+        return result;
+    }
+
+    @Override
+    public boolean offer(T element) {
+        lock.lock();
+        try {
+            return push(element);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll() {
+        if (size == 0) {
+            return null;
+        }
+        lock.lock();
+        try {
+            return pop();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        T task;
+        while (count < limit && (task = poll()) != null) {
+            sink.accept(task);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * 批量入队，整个过程只加一次锁，supplier只在有空位时被调用.
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < limit && size < tasks.length) {
+                push(supplier.get());
+                ++count;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+}
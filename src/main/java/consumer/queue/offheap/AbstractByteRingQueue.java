@@ -0,0 +1,320 @@
+package consumer.queue.offheap;
+
+import consumer.codec.TaskCodec;
+import consumer.queue.SQueue;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static consumer.util.UnsafeAccess.UNSAFE;
+
+/**
+ * 基于一段堆外内存的变长记录环形队列，任务经{@link TaskCodec}编码后存入，所以堆中不保留任何任务对象.
+ * <p>内存布局: [头部(384字节): magic, 容量, 标志, 写位置以及读位置各占一个缓存行][数据区(容量字节)].
+ * 读写位置都是单调递增的字节数，并且与数据一起位于这段内存中，所以可以被映射了同一文件的多个进程共享.</p>
+ * <p>记录格式为[记录长度(int)][类型(int)][内容]，按8字节对齐.生产者先写内容，最后以ordered写发布长度；
+ * 空间不足以放下整条记录时，先在数据区末尾写一条填充记录，然后从数据区开头继续.
+ * 消费者读取记录之后将其清零，然后再推进读位置，所以生产者总是在全零的空间上写入.</p>
+ * <p>多生产者通过CAS写位置认领空间，单生产者直接写入.{@link #read()}只能被一个消费者调用，多消费者之间的同步由子类负责.</p>
+ *
+ * @author skywalker
+ */
+abstract class AbstractByteRingQueue<T> implements SQueue<T> {
+
+    static final int MAGIC = 0x53515545;
+    static final int MAGIC_OFFSET = 0;
+    static final int CAPACITY_OFFSET = 4;
+    static final int FLAGS_OFFSET = 8;
+    static final int TAIL_OFFSET = 128;
+    static final int OFFERED_OFFSET = TAIL_OFFSET + 8;
+    static final int HEAD_OFFSET = 256;
+    static final int POLLED_OFFSET = HEAD_OFFSET + 8;
+    /**
+     * 头部的大小，数据区从此处开始.
+     */
+    static final int HEADER_SIZE = 384;
+    static final int FLAG_MULTI_PRODUCER = 1;
+
+    private static final int RECORD_HEADER = 8;
+    private static final int ALIGNMENT = 8;
+    private static final int TYPE_MESSAGE = 1;
+    private static final int TYPE_PADDING = 2;
+    private static final long ADDRESS_OFFSET;
+    private static final long BYTE_ARRAY_BASE = UNSAFE.arrayBaseOffset(byte[].class);
+
+    static {
+        try {
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 持有buffer以免其被回收.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * 消费者解码时使用的视图.
+     */
+    private final ByteBuffer view;
+    private final TaskCodec<T> codec;
+    private final long address;
+    private final long data;
+    private final int capacity;
+    private final int mask;
+    private final boolean multiProducer;
+    /**
+     * 编码使用的缓冲区，每个生产者线程一个.
+     */
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+    /**
+     * 至今编码后最长的记录，{@link #fill(Supplier, int)}据此判断是否还有空间.
+     */
+    private volatile int maxRecord = RECORD_HEADER;
+
+    /**
+     * @param buffer 堆外内存，大小为HEADER_SIZE + 数据区容量(2的幂)
+     * @param codec  任务的序列化方式
+     * @param create 是否初始化头部，为false时从头部读取容量以及生产者模式
+     * @param multiProducer 是否支持多个生产者，只在create时有效
+     */
+    AbstractByteRingQueue(ByteBuffer buffer, TaskCodec<T> codec, boolean create, boolean multiProducer) {
+        Objects.requireNonNull(buffer);
+        Objects.requireNonNull(codec);
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("The param buffer must be direct.");
+        }
+        this.buffer = buffer;
+        this.view = buffer.duplicate();
+        this.codec = codec;
+        this.address = UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+        this.data = address + HEADER_SIZE;
+        if (create) {
+            final int capacity = buffer.capacity() - HEADER_SIZE;
+            checkCapacity(capacity);
+            UNSAFE.setMemory(address, buffer.capacity(), (byte) 0);
+            UNSAFE.putInt(address + CAPACITY_OFFSET, capacity);
+            UNSAFE.putInt(address + FLAGS_OFFSET, multiProducer ? FLAG_MULTI_PRODUCER : 0);
+            UNSAFE.putIntVolatile(null, address + MAGIC_OFFSET, MAGIC);
+        } else if (UNSAFE.getIntVolatile(null, address + MAGIC_OFFSET) != MAGIC) {
+            throw new IllegalArgumentException("The buffer is not an initialized queue.");
+        }
+        this.capacity = UNSAFE.getInt(address + CAPACITY_OFFSET);
+        if (capacity + HEADER_SIZE > buffer.capacity()) {
+            throw new IllegalArgumentException("The buffer is smaller than the capacity " + capacity + ".");
+        }
+        this.mask = capacity - 1;
+        this.multiProducer = (UNSAFE.getInt(address + FLAGS_OFFSET) & FLAG_MULTI_PRODUCER) != 0;
+    }
+
+    static void checkCapacity(int capacity) {
+        if (capacity < 64 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The param capacity must be a power of 2 and at least 64.");
+        }
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * 将任务编码到当前线程的缓冲区中，缓冲区不足时加倍.
+     *
+     * @return 编码后的缓冲区，position为内容的长度
+     */
+    private ByteBuffer encode(T element) {
+        ByteBuffer buffer = scratch.get();
+        while (true) {
+            buffer.clear();
+            try {
+                codec.encode(element, buffer);
+                return buffer;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= capacity) {
+                    throw new IllegalArgumentException("The encoded task is larger than the capacity " +
+                            capacity + ".");
+                }
+                buffer = ByteBuffer.allocate(buffer.capacity() << 1);
+                scratch.set(buffer);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException 如果任务编码后超过了容量
+     */
+    @Override
+    public boolean offer(T element) {
+        final ByteBuffer encoded = encode(element);
+        return write(encoded.array(), encoded.position());
+    }
+
+    /**
+     * 认领空间并写入一条记录.
+     *
+     * @return false, 如果剩余空间不足
+     */
+    private boolean write(byte[] payload, int length) {
+        final int recordLength = RECORD_HEADER + length;
+        final int required = align(recordLength);
+        if (required > capacity) {
+            throw new IllegalArgumentException("The encoded task is larger than the capacity " + capacity + ".");
+        }
+        if (required > maxRecord) {
+            maxRecord = required;
+        }
+        long tail;
+        int index;
+        int padding;
+        do {
+            tail = UNSAFE.getLongVolatile(null, address + TAIL_OFFSET);
+            final long head = UNSAFE.getLongVolatile(null, address + HEAD_OFFSET);
+            index = (int) tail & mask;
+            final int toEnd = capacity - index;
+            padding = (required > toEnd ? toEnd : 0);
+            if (required + padding > capacity - (int) (tail - head)) {
+                return false;
+            }
+            if (!multiProducer) {
+                UNSAFE.putOrderedLong(null, address + TAIL_OFFSET, tail + padding + required);
+                break;
+            }
+        } while (!UNSAFE.compareAndSwapLong(null, address + TAIL_OFFSET, tail, tail + padding + required));
+        if (padding > 0) {
+            UNSAFE.putInt(data + index + 4, TYPE_PADDING);
+            UNSAFE.putOrderedInt(null, data + index, padding);
+            index = 0;
+        }
+        UNSAFE.copyMemory(payload, BYTE_ARRAY_BASE, null, data + index + RECORD_HEADER, length);
+        UNSAFE.putInt(data + index + 4, TYPE_MESSAGE);
+        UNSAFE.putOrderedInt(null, data + index, recordLength);
+        if (multiProducer) {
+            UNSAFE.getAndAddLong(null, address + OFFERED_OFFSET, 1);
+        } else {
+            UNSAFE.putOrderedLong(null, address + OFFERED_OFFSET, UNSAFE.getLong(address + OFFERED_OFFSET) + 1);
+        }
+        return true;
+    }
+
+    /**
+     * 读取一条记录，只能由消费者调用.
+     *
+     * @return null, 如果当前没有已发布的记录
+     */
+    T read() {
+        while (true) {
+            final long head = UNSAFE.getLongVolatile(null, address + HEAD_OFFSET);
+            final int index = (int) head & mask;
+            final int length = UNSAFE.getIntVolatile(null, data + index);
+            if (length <= 0) {
+                return null;
+            }
+            if (UNSAFE.getInt(data + index + 4) == TYPE_PADDING) {
+                UNSAFE.setMemory(data + index, length, (byte) 0);
+                UNSAFE.putOrderedLong(null, address + HEAD_OFFSET, head + length);
+                continue;
+            }
+            final int start = HEADER_SIZE + index;
+            view.clear();
+            view.position(start + RECORD_HEADER).limit(start + length);
+            final T task;
+            try {
+                task = codec.decode(view);
+            } finally {
+                //无法解码的记录同样被丢弃，以免阻塞之后的记录
+                final int aligned = align(length);
+                UNSAFE.setMemory(data + index, aligned, (byte) 0);
+                UNSAFE.putOrderedLong(null, address + POLLED_OFFSET, UNSAFE.getLong(address + POLLED_OFFSET) + 1);
+                UNSAFE.putOrderedLong(null, address + HEAD_OFFSET, head + aligned);
+            }
+            return task;
+        }
+    }
+
+    @Override
+    public T poll() {
+        return read();
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        int count = 0;
+        T task;
+        while (count < limit && (task = read()) != null) {
+            sink.accept(task);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * 批量添加.任务的大小只有在编码之后才能知道，所以只在剩余空间足以放下至今最长的记录时才调用supplier，
+     * 并且只在上一条记录写入成功之后才取下一个任务，当前线程的缓冲区中最多只有一条编码后的记录.
+     * <p>如果新的任务更长并且当前放不下，那么直接返回而不等待消费者腾出空间(调用者可能正是消费者)，
+     * 此时与{@link SQueue#fill(Supplier, int)}的默认实现一样，supplier比返回值多被调用一次，调用者应以返回值为准.</p>
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        int count = 0;
+        while (count < limit && remaining() >= maxRecord << 1) {
+            final ByteBuffer encoded = encode(supplier.get());
+            if (!write(encoded.array(), encoded.position())) {
+                break;
+            }
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * 数据区中的剩余字节数.由于可能需要填充记录，所以只有不超过其一半的记录才能保证写入.
+     */
+    private int remaining() {
+        final long head = UNSAFE.getLongVolatile(null, address + HEAD_OFFSET);
+        final long tail = UNSAFE.getLongVolatile(null, address + TAIL_OFFSET);
+        return capacity - (int) (tail - head);
+    }
+
+    /**
+     * 已发布但尚未被取出的记录数.
+     */
+    @Override
+    public int size() {
+        final long polled = UNSAFE.getLongVolatile(null, address + POLLED_OFFSET);
+        final long offered = UNSAFE.getLongVolatile(null, address + OFFERED_OFFSET);
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, offered - polled));
+    }
+
+    /**
+     * 当前是否没有可以取出的记录.
+     */
+    @Override
+    public boolean isEmpty() {
+        final long head = UNSAFE.getLongVolatile(null, address + HEAD_OFFSET);
+        return UNSAFE.getIntVolatile(null, data + ((int) head & mask)) <= 0;
+    }
+
+    /**
+     * 得到数据区的容量(字节).
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 是否支持多个生产者.
+     */
+    public boolean isMultiProducer() {
+        return multiProducer;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+}
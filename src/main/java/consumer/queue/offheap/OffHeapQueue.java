@@ -0,0 +1,86 @@
+package consumer.queue.offheap;
+
+import consumer.codec.TaskCodec;
+import consumer.queue.QueueFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 堆外的{@link consumer.queue.SQueue}实现: 任务被编码为变长记录存入{@link ByteBuffer#allocateDirect(int)}分配的
+ * 环形缓冲区，所以无论积压多少任务，堆中都只有出队时解码出的对象，不会因大量长期存活的任务加重老年代GC的负担.
+ * <p>容量以字节计算.支持单生产者或者多生产者；多消费者时消费者之间通过锁串行化，解码在锁内进行.</p>
+ * <p>消费者可以通过{@link #factory(int, TaskCodec)}以及
+ * {@link consumer.cas.AbstractSPCASConsumer#setQueueFactory(QueueFactory)}使用此队列.</p>
+ *
+ * @author skywalker
+ */
+public class OffHeapQueue<T> extends AbstractByteRingQueue<T> {
+
+    /**
+     * 多消费者时使用的锁，单消费者时为null.
+     */
+    private final ReentrantLock consumerLock;
+
+    /**
+     * @param capacity      数据区的容量(字节)，必须为2的幂并且至少为64
+     * @param codec         任务的序列化方式
+     * @param multiProducer 是否支持多个生产者
+     * @param multiConsumer 是否支持多个消费者
+     */
+    public OffHeapQueue(int capacity, TaskCodec<T> codec, boolean multiProducer, boolean multiConsumer) {
+        super(allocate(capacity), codec, true, multiProducer);
+        this.consumerLock = (multiConsumer ? new ReentrantLock() : null);
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        checkCapacity(capacity);
+        return ByteBuffer.allocateDirect(HEADER_SIZE + capacity);
+    }
+
+    /**
+     * 得到创建此队列的{@link QueueFactory}，生产者以及消费者模式由消费者决定.
+     *
+     * @param capacity 每个队列数据区的容量(字节)，必须为2的幂并且至少为64
+     * @param codec    任务的序列化方式
+     */
+    public static <T> QueueFactory<T> factory(int capacity, TaskCodec<T> codec) {
+        checkCapacity(capacity);
+        Objects.requireNonNull(codec);
+        return (queueSize, multiProducer, multiConsumer) -> new OffHeapQueue<>(capacity, codec, multiProducer,
+                multiConsumer);
+    }
+
+    @Override
+    public T poll() {
+        if (consumerLock == null) {
+            return read();
+        }
+        consumerLock.lock();
+        try {
+            return read();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    /**
+     * 多消费者时只在锁内取出任务，在锁外交给sink，以免消费逻辑阻塞其它消费者.
+     */
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        if (consumerLock == null) {
+            return super.drain(sink, limit);
+        }
+        int count = 0;
+        T task;
+        while (count < limit && (task = poll()) != null) {
+            sink.accept(task);
+            ++count;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,97 @@
+package consumer.queue.offheap;
+
+import consumer.codec.TaskCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于内存映射文件的进程间队列: 多个进程映射同一个文件，生产者写入、消费者读取都只是内存操作，
+ * 不需要系统调用以及内核与用户空间之间的拷贝.读写位置同样位于映射的内存中，通过CAS/ordered写在进程之间同步.
+ * <p>支持单生产者或者多生产者(可以位于不同进程)，只支持一个消费者.</p>
+ * <p>注意: 其它进程中的生产者无法唤醒本进程中park的消费线程，所以消费者应使用不依赖唤醒的
+ * {@link consumer.cas.strategy.RetryStrategy}，比如{@link consumer.cas.strategy.PollingStrategy}.
+ * 消费者可以通过{@link consumer.cas.AbstractSPCASConsumer#setQueueFactory(consumer.queue.QueueFactory)}使用此队列.</p>
+ *
+ * @author skywalker
+ */
+public class SharedMemoryQueue<T> extends AbstractByteRingQueue<T> implements Closeable {
+
+    private final RandomAccessFile file;
+
+    private SharedMemoryQueue(RandomAccessFile file, MappedByteBuffer buffer, TaskCodec<T> codec, boolean create,
+                              boolean multiProducer) {
+        super(buffer, codec, create, multiProducer);
+        this.file = file;
+    }
+
+    /**
+     * 创建(或者覆盖)队列文件并初始化.应在其它进程打开之前调用，并且同一时刻只能有一个进程调用.
+     *
+     * @param file          队列文件
+     * @param capacity      数据区的容量(字节)，必须为2的幂并且至少为64
+     * @param codec         任务的序列化方式
+     * @param multiProducer 是否允许多个生产者
+     * @throws UncheckedIOException 如果映射文件失败
+     */
+    public static <T> SharedMemoryQueue<T> create(File file, int capacity, TaskCodec<T> codec, boolean multiProducer) {
+        checkCapacity(capacity);
+        return map(file, HEADER_SIZE + capacity, codec, true, multiProducer);
+    }
+
+    /**
+     * 打开已被{@link #create(File, int, TaskCodec, boolean)}初始化的队列文件.
+     *
+     * @throws UncheckedIOException     如果映射文件失败
+     * @throws IllegalArgumentException 如果文件尚未被初始化
+     */
+    public static <T> SharedMemoryQueue<T> open(File file, TaskCodec<T> codec) {
+        if (file.length() <= HEADER_SIZE) {
+            throw new IllegalArgumentException("The file " + file + " is not an initialized queue.");
+        }
+        return map(file, (int) file.length(), codec, false, false);
+    }
+
+    private static <T> SharedMemoryQueue<T> map(File file, int size, TaskCodec<T> codec, boolean create,
+                                                boolean multiProducer) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (create) {
+                raf.setLength(size);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new SharedMemoryQueue<>(raf, buffer, codec, create, multiProducer);
+        } catch (IOException e) {
+            closeQuietly(raf);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(raf);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile raf) {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ignored) {
+                //ignore
+            }
+        }
+    }
+
+    /**
+     * 关闭文件.映射在缓冲区被回收时才会解除，所以关闭之后不应再访问此队列，文件由调用者删除.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
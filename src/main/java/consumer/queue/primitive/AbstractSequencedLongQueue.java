@@ -0,0 +1,104 @@
+package consumer.queue.primitive;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 基于槽位序号(Vyukov)的多生产者{@link LongSQueue}骨架实现: 槽位i的序号为i时可写，为i + 1时可读，
+ * 读取之后序号被设为i + capacity，即下一圈可写.生产者通过CAS申请下标，消费方式由子类决定.
+ *
+ * @author skywalker
+ */
+abstract class AbstractSequencedLongQueue implements LongSQueue {
+
+    protected final long[] buffer;
+    protected final AtomicLongArray sequences;
+    protected final int mask;
+    protected final AtomicLong producerIndex = new AtomicLong();
+    protected final AtomicLong consumerIndex = new AtomicLong();
+
+    AbstractSequencedLongQueue(int capacity) {
+        this.buffer = new long[LongQueues.roundToPowerOfTwo(capacity)];
+        this.mask = buffer.length - 1;
+        this.sequences = new AtomicLongArray(buffer.length);
+        for (int i = 0; i < buffer.length; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 申请一个可写的下标.
+     *
+     * @return 下标，如果队列已满，那么返回-1
+     */
+    private long claimWrite() {
+        long index;
+        for (;;) {
+            index = producerIndex.get();
+            long sequence = sequences.get((int) index & mask);
+            if (sequence < index) {
+                return -1;
+            }
+            if (sequence == index && producerIndex.compareAndSet(index, index + 1)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * 申请一个可读的下标.
+     *
+     * @return 下标，如果队列为空，那么返回-1
+     */
+    protected abstract long claimRead();
+
+    @Override
+    public boolean offer(long element) {
+        final long index = claimWrite();
+        if (index < 0) {
+            return false;
+        }
+        buffer[(int) index & mask] = element;
+        sequences.lazySet((int) index & mask, index + 1);
+        return true;
+    }
+
+    @Override
+    public int fill(LongSupplier supplier, int limit) {
+        int count = 0;
+        long index;
+        while (count < limit && (index = claimWrite()) >= 0) {
+            buffer[(int) index & mask] = supplier.getAsLong();
+            sequences.lazySet((int) index & mask, index + 1);
+            ++count;
+        }
+        return count;
+    }
+
+    @Override
+    public int drain(LongConsumer sink, int limit) {
+        int count = 0;
+        long index;
+        while (count < limit && (index = claimRead()) >= 0) {
+            final long element = buffer[(int) index & mask];
+            sequences.lazySet((int) index & mask, index + buffer.length);
+            sink.accept(element);
+            ++count;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return LongQueues.size(producerIndex, consumerIndex, buffer.length);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        final long index = consumerIndex.get();
+        return sequences.get((int) index & mask) != index + 1;
+    }
+
+}
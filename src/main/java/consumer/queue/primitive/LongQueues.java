@@ -0,0 +1,36 @@
+package consumer.queue.primitive;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link LongSQueue}实现的工具方法.
+ *
+ * @author skywalker
+ */
+final class LongQueues {
+
+    private LongQueues() {
+    }
+
+    static int roundToPowerOfTwo(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The param capacity must be positive.");
+        }
+        return (capacity == 1 ? 1 : 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1)));
+    }
+
+    /**
+     * 在两个下标并发变化时得到一个一致的大小.
+     */
+    static int size(AtomicLong producerIndex, AtomicLong consumerIndex, int capacity) {
+        long after = consumerIndex.get();
+        long before, producer;
+        do {
+            before = after;
+            producer = producerIndex.get();
+            after = consumerIndex.get();
+        } while (before != after);
+        return (int) Math.max(0, Math.min(capacity, producer - after));
+    }
+
+}
@@ -0,0 +1,43 @@
+package consumer.queue.primitive;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * long元素的队列接口，语义同{@link consumer.queue.SQueue}，元素存放在long[]中，没有装箱.
+ * <p>没有单个元素的poll方法(无法表示"没有元素")，消费方统一使用{@link #drain(LongConsumer, int)}.</p>
+ *
+ * @author skywalker
+ */
+public interface LongSQueue {
+
+    /**
+     * 向队列中添加元素，如果添加成功，返回true.
+     */
+    boolean offer(long element);
+
+    /**
+     * 得到队列的大小.
+     */
+    int size();
+
+    /**
+     * 当前队列是否为空.
+     */
+    boolean isEmpty();
+
+    /**
+     * 批量取出元素并交给sink处理，最多取出limit个.
+     *
+     * @return 实际取出的元素数量，如果当前没有可用的元素，那么返回0
+     */
+    int drain(LongConsumer sink, int limit);
+
+    /**
+     * 批量添加元素，只有在确定可以添加时才会调用supplier.
+     *
+     * @return 实际添加的元素数量
+     */
+    int fill(LongSupplier supplier, int limit);
+
+}
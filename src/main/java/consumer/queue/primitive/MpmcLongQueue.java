@@ -0,0 +1,29 @@
+package consumer.queue.primitive;
+
+/**
+ * 多生产者多消费者的{@link LongSQueue}实现，对应{@link consumer.queue.cas.MpmcBasedQueue}，消费者通过CAS申请下标.
+ *
+ * @author skywalker
+ */
+public class MpmcLongQueue extends AbstractSequencedLongQueue {
+
+    public MpmcLongQueue(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    protected long claimRead() {
+        long index;
+        for (;;) {
+            index = consumerIndex.get();
+            long sequence = sequences.get((int) index & mask);
+            if (sequence < index + 1) {
+                return -1;
+            }
+            if (sequence == index + 1 && consumerIndex.compareAndSet(index, index + 1)) {
+                return index;
+            }
+        }
+    }
+
+}
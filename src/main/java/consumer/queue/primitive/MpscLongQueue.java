@@ -0,0 +1,24 @@
+package consumer.queue.primitive;
+
+/**
+ * 多生产者单消费者的{@link LongSQueue}实现，对应{@link consumer.queue.cas.MpscBasedQueue}，消费者不需要CAS.
+ *
+ * @author skywalker
+ */
+public class MpscLongQueue extends AbstractSequencedLongQueue {
+
+    public MpscLongQueue(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    protected long claimRead() {
+        final long index = consumerIndex.get();
+        if (sequences.get((int) index & mask) != index + 1) {
+            return -1;
+        }
+        consumerIndex.lazySet(index + 1);
+        return index;
+    }
+
+}
@@ -0,0 +1,80 @@
+package consumer.queue.primitive;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 单生产者单消费者的{@link LongSQueue}实现，对应{@link consumer.queue.cas.SpscBasedQueue}.
+ * <p>两端各自只写自己的下标(lazySet)，生产者缓存消费者的下标，只有在看起来已满时才重新读取.</p>
+ *
+ * @author skywalker
+ */
+public class SpscLongQueue implements LongSQueue {
+
+    private final long[] buffer;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    /**
+     * 生产者私有，生产者下标达到此值之前一定不会满.
+     */
+    private long producerLimit;
+
+    public SpscLongQueue(int capacity) {
+        this.buffer = new long[LongQueues.roundToPowerOfTwo(capacity)];
+        this.mask = buffer.length - 1;
+        this.producerLimit = buffer.length;
+    }
+
+    @Override
+    public boolean offer(long element) {
+        final long index = producerIndex.get();
+        if (index >= producerLimit && index >= (producerLimit = consumerIndex.get() + buffer.length)) {
+            return false;
+        }
+        buffer[(int) index & mask] = element;
+        producerIndex.lazySet(index + 1);
+        return true;
+    }
+
+    @Override
+    public int fill(LongSupplier supplier, int limit) {
+        final long index = producerIndex.get();
+        if (index + limit > producerLimit) {
+            producerLimit = consumerIndex.get() + buffer.length;
+        }
+        final int count = (int) Math.min(limit, producerLimit - index);
+        for (int i = 0; i < count; i++) {
+            buffer[(int) (index + i) & mask] = supplier.getAsLong();
+        }
+        if (count > 0) {
+            producerIndex.lazySet(index + count);
+        }
+        return count;
+    }
+
+    @Override
+    public int drain(LongConsumer sink, int limit) {
+        final long index = consumerIndex.get();
+        final int count = (int) Math.min(limit, producerIndex.get() - index);
+        for (int i = 0; i < count; i++) {
+            sink.accept(buffer[(int) (index + i) & mask]);
+        }
+        if (count > 0) {
+            consumerIndex.lazySet(index + count);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return LongQueues.size(producerIndex, consumerIndex, buffer.length);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+}
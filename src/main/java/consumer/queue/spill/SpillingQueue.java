@@ -0,0 +1,405 @@
+package consumer.queue.spill;
+
+import consumer.codec.TaskCodec;
+import consumer.queue.SQueue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 带有磁盘溢出层的{@link SQueue}: 内存队列已满时，任务经{@link TaskCodec}编码后追加写入内存映射的段文件，
+ * 内存队列取空后再按FIFO顺序从段文件中读回，所以突发流量既不会阻塞生产者也不会丢失任务.
+ * <p>一旦开始溢出，后续任务都写入段文件，直到段文件被读空，这样内存中的任务总是早于磁盘中的任务.</p>
+ * <p>生产者只对映射的缓冲区进行顺序写，不调用force，由操作系统负责回写.读完的段被重置后复用，
+ * 最多保留{@link #MAX_FREE_SEGMENTS}个空闲段，多余的被删除.溢出层只用于削峰，不保证进程崩溃后的持久性.</p>
+ * <p>溢出层的读写在同一把锁下进行，只有在溢出时才会用到.{@link #drain(Consumer, int)}只在锁内解码，在锁外交给sink.</p>
+ * <p>创建以及映射段文件的开销较大，所以构造时预先创建一个空闲段，空闲段用完之后由消费线程在锁外补充一个，
+ * 生产者通常不需要在溢出时创建文件.</p>
+ *
+ * @author skywalker
+ */
+public class SpillingQueue<T> implements SQueue<T>, Closeable {
+
+    /**
+     * 最多保留的空闲段数.
+     */
+    public static final int MAX_FREE_SEGMENTS = 2;
+    /**
+     * 记录头: 记录长度(int).
+     */
+    private static final int HEADER = 4;
+
+    private final SQueue<T> memory;
+    private final TaskCodec<T> codec;
+    private final File directory;
+    private final int segmentSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 正在使用的段，队头为正在读的段，队尾为正在写的段.
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<Segment> free = new ArrayDeque<>();
+    /**
+     * 空闲段是否已被用完，由消费线程补充，参见{@link #replenish()}.
+     */
+    private final AtomicBoolean spareNeeded = new AtomicBoolean(false);
+    /**
+     * {@link #drain(Consumer, int)}在锁内解码的任务，每个消费线程一个.
+     */
+    private final ThreadLocal<ArrayList<T>> unspilled = ThreadLocal.withInitial(ArrayList::new);
+    /**
+     * 段文件中尚未被读取的任务数，只在锁内修改.
+     */
+    private volatile int spilled = 0;
+    private boolean closed = false;
+    /**
+     * 是否在段文件被读空时关闭，参见{@link #closeWhenDrained()}.
+     */
+    private boolean closing = false;
+
+    /**
+     * @param memory      内存队列
+     * @param codec       任务的序列化方式
+     * @param directory   段文件所在的目录，不存在时将被创建
+     * @param segmentSize 每个段文件的大小(字节)，单个任务编码后不能超过此值
+     * @throws UncheckedIOException 如果创建空闲段失败
+     */
+    public SpillingQueue(SQueue<T> memory, TaskCodec<T> codec, File directory, int segmentSize) {
+        Objects.requireNonNull(memory);
+        Objects.requireNonNull(codec);
+        Objects.requireNonNull(directory);
+        if (segmentSize <= HEADER) {
+            throw new IllegalArgumentException("The param segmentSize must be bigger than " + HEADER + ".");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Can't create the spill directory " + directory + ".");
+        }
+        this.memory = memory;
+        this.codec = codec;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.free.addLast(new Segment());
+    }
+
+    /**
+     * 入队，内存队列已满时写入段文件，所以总是返回true.
+     *
+     * @throws UncheckedIOException     如果创建段文件失败
+     * @throws IllegalArgumentException 如果任务编码后超过了段的大小
+     */
+    @Override
+    public boolean offer(T element) {
+        if (spilled == 0 && memory.offer(element)) {
+            return true;
+        }
+        lock.lock();
+        try {
+            //再次检查，溢出层可能已被读空
+            if (spilled == 0 && memory.offer(element)) {
+                return true;
+            }
+            spill(element);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 追加写入一条记录，必须持有锁.
+     */
+    private void spill(T element) {
+        Segment segment = segments.peekLast();
+        if (segment == null || !segment.append(element)) {
+            segment = nextSegment();
+            if (!segment.append(element)) {
+                throw new IllegalArgumentException("The encoded task is larger than the segment size " +
+                        segmentSize + ".");
+            }
+        }
+        spilled = spilled + 1;
+    }
+
+    private Segment nextSegment() {
+        if (closed) {
+            throw new IllegalStateException("SpillingQueue has been closed.");
+        }
+        Segment segment = free.pollFirst();
+        if (segment == null) {
+            //消费线程尚未补充，只能在生产者线程中创建
+            segment = new Segment();
+        }
+        if (free.isEmpty()) {
+            spareNeeded.set(true);
+        }
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * 空闲段已被用完时，由消费线程在锁外创建并映射一个新的空闲段，这样生产者下一次需要新段时不必自己创建.
+     * 创建失败时不抛出异常，由生产者在需要时再次创建并抛出.
+     */
+    private void replenish() {
+        if (!spareNeeded.get() || !spareNeeded.compareAndSet(true, false)) {
+            return;
+        }
+        Segment spare;
+        try {
+            spare = new Segment();
+        } catch (UncheckedIOException e) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!closed && free.size() < MAX_FREE_SEGMENTS) {
+                free.addLast(spare);
+                spare = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (spare != null) {
+            spare.delete();
+        }
+    }
+
+    @Override
+    public T poll() {
+        replenish();
+        T task = memory.poll();
+        if (task != null || spilled == 0) {
+            return task;
+        }
+        lock.lock();
+        try {
+            task = unspill();
+            return (task == null ? memory.poll() : task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从段文件中读取一条记录，必须持有锁.
+     *
+     * @return null, 如果段文件中没有记录
+     */
+    private T unspill() {
+        Segment segment;
+        while ((segment = segments.peekFirst()) != null) {
+            if (segment.hasRemaining()) {
+                T task = segment.read();
+                spilled = spilled - 1;
+                return task;
+            }
+            if (segment == segments.peekLast()) {
+                //正在写的段已被读完，重置后继续使用
+                segment.reset();
+                if (closing) {
+                    close();
+                }
+                return null;
+            }
+            segments.pollFirst();
+            recycle(segment);
+        }
+        return null;
+    }
+
+    private void recycle(Segment segment) {
+        if (free.size() < MAX_FREE_SEGMENTS && !closed) {
+            segment.reset();
+            free.addLast(segment);
+        } else {
+            segment.delete();
+        }
+    }
+
+    @Override
+    public int drain(Consumer<? super T> sink, int limit) {
+        replenish();
+        int count = memory.drain(sink, limit);
+        if (count < limit && spilled > 0) {
+            final ArrayList<T> tasks = unspilled.get();
+            lock.lock();
+            try {
+                T task;
+                while (count + tasks.size() < limit && (task = unspill()) != null) {
+                    tasks.add(task);
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                for (int i = 0, n = tasks.size(); i < n; i++) {
+                    sink.accept(tasks.get(i));
+                }
+                count += tasks.size();
+            } finally {
+                tasks.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 批量入队，内存队列容纳不下的部分写入段文件.
+     */
+    @Override
+    public int fill(Supplier<? extends T> supplier, int limit) {
+        int count = (spilled == 0 ? memory.fill(supplier, limit) : 0);
+        if (count < limit) {
+            lock.lock();
+            try {
+                while (count < limit) {
+                    spill(supplier.get());
+                    ++count;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return memory.size() + spilled;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (spilled == 0 && memory.isEmpty());
+    }
+
+    /**
+     * 得到段文件中尚未被读取的任务数.
+     */
+    public int getSpilledCount() {
+        return spilled;
+    }
+
+    /**
+     * 段文件中的任务全部被读取之后再删除所有段文件，用于消费者的正常终结.
+     */
+    public void closeWhenDrained() {
+        lock.lock();
+        try {
+            if (spilled == 0) {
+                close();
+            } else {
+                closing = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除所有段文件，段文件中尚未被读取的任务将被丢弃.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Segment segment : segments) {
+                segment.delete();
+            }
+            for (Segment segment : free) {
+                segment.delete();
+            }
+            segments.clear();
+            free.clear();
+            spilled = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 内存映射的段文件，记录格式为[长度(int)][内容]，只在锁内访问.
+     */
+    private final class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int writePosition = 0;
+        private int readPosition = 0;
+
+        private Segment() {
+            try {
+                this.file = File.createTempFile("spill-", ".seg", directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            file.deleteOnExit();
+        }
+
+        /**
+         * @return false, 如果剩余空间不足
+         */
+        private boolean append(T element) {
+            if (segmentSize - writePosition <= HEADER) {
+                return false;
+            }
+            buffer.limit(segmentSize).position(writePosition + HEADER);
+            try {
+                codec.encode(element, buffer);
+            } catch (BufferOverflowException e) {
+                return false;
+            }
+            int length = buffer.position() - writePosition - HEADER;
+            buffer.putInt(writePosition, length);
+            writePosition += HEADER + length;
+            return true;
+        }
+
+        private boolean hasRemaining() {
+            return readPosition < writePosition;
+        }
+
+        private T read() {
+            int length = buffer.limit(segmentSize).getInt(readPosition);
+            int start = readPosition + HEADER;
+            buffer.limit(start + length).position(start);
+            readPosition = start + length;
+            return codec.decode(buffer);
+        }
+
+        private void reset() {
+            writePosition = 0;
+            readPosition = 0;
+        }
+
+        private void delete() {
+            //映射在缓冲区被回收时解除，Linux等系统允许删除仍被映射的文件
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+
+    }
+
+}
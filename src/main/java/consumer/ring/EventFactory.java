@@ -0,0 +1,15 @@
+package consumer.ring;
+
+/**
+ * 事件工厂，{@link RingBufferConsumer}启动时用它预先填满环形缓冲区.
+ *
+ * @author skywalker
+ */
+public interface EventFactory<E> {
+
+    /**
+     * 创建一个可复用的事件对象.
+     */
+    E newInstance();
+
+}
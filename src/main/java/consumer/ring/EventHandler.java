@@ -0,0 +1,19 @@
+package consumer.ring;
+
+/**
+ * 处理{@link RingBufferConsumer}中已发布的事件，地位同{@link consumer.pool.ConsumeAction}.
+ * <p>事件对象在此方法返回后会被复用，实现不应继续持有它.</p>
+ *
+ * @author skywalker
+ */
+public interface EventHandler<E> {
+
+    /**
+     * 处理事件.
+     *
+     * @param event    事件
+     * @param sequence 事件的序号
+     */
+    void onEvent(E event, long sequence);
+
+}
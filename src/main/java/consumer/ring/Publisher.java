@@ -0,0 +1,44 @@
+package consumer.ring;
+
+/**
+ * 以"申请-修改-发布"的方式提交事件，地位同{@link consumer.Submitable}，但不需要为每个任务创建新的对象:
+ * <pre>
+ * long sequence = publisher.claim();
+ * try {
+ *     publisher.get(sequence).setValue(value);
+ * } finally {
+ *     publisher.publish(sequence);
+ * }
+ * </pre>
+ * 申请到的序号必须被发布，否则消费者将停在此序号上.
+ *
+ * @author skywalker
+ */
+public interface Publisher<E> {
+
+    /**
+     * 申请下一个序号，如果缓冲区已满，那么一直等待.
+     *
+     * @return 序号
+     * @throws IllegalStateException 如果在等待时消费者已被终结
+     */
+    long claim();
+
+    /**
+     * 尝试申请下一个序号.
+     *
+     * @return 序号，如果缓冲区已满，那么返回-1
+     */
+    long tryClaim();
+
+    /**
+     * 得到序号对应的事件对象.
+     */
+    E get(long sequence);
+
+    /**
+     * 发布序号，之后消费者便可处理对应的事件.
+     */
+    void publish(long sequence);
+
+}
@@ -0,0 +1,284 @@
+package consumer.ring;
+
+import consumer.lifecycle.LifeCycle;
+import consumer.lifecycle.StateCheckDelegate;
+import consumer.util.Util;
+import org.slf4j.Logger;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static consumer.util.UnsafeAccess.UNSAFE;
+
+/**
+ * 基于预分配环形缓冲区的消费者(类似Disruptor): 启动时由{@link EventFactory}填满缓冲区，生产者通过{@link Publisher}
+ * 申请序号、原地修改事件、然后发布，消费线程按序号顺序交给{@link EventHandler}处理，处理完成后槽位自动被复用.
+ * <p>支持多个生产者，只有一个消费线程.稳定状态下申请、发布以及消费均不分配对象.</p>
+ * <p>每个槽位记录其最近一次被发布时所处的圈数，所以多个生产者可以乱序发布，消费者只处理连续发布的部分.</p>
+ *
+ * @author skywalker
+ */
+public class RingBufferConsumer<E> implements LifeCycle, Publisher<E>, Runnable {
+
+    private final Object[] entries;
+    private final int mask;
+    private final int indexShift;
+    /**
+     * 各槽位最近一次被发布时的圈数(sequence >>> indexShift).
+     */
+    private final AtomicIntegerArray available;
+    /**
+     * 最近一次被申请的序号.
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /**
+     * 最近一次被处理完成的序号.
+     */
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    private final EventHandler<E> handler;
+    private final StateCheckDelegate delegate = StateCheckDelegate.getInstance();
+    private final Logger log = Util.getLogger(this.getClass());
+
+    private UncaughtExceptionHandler exceptionHandler;
+    private ExecutorService executor;
+    private volatile Thread consumerThread;
+    /**
+     * 消费线程是否即将park，生产者据此决定是否需要unpark.
+     */
+    private volatile boolean waiting = false;
+    private volatile State state = State.INIT;
+    private volatile boolean consumeLeft = false;
+    private volatile CompletableFuture<Void> future;
+
+    /**
+     * 消费线程park之前自旋检查的次数.
+     */
+    private static final int SPIN_TRIES = 128;
+    /**
+     * 缓冲区已满时生产者park之前yield的次数.
+     */
+    private static final int CLAIM_YIELD_TRIES = 64;
+    /**
+     * 缓冲区已满时生产者每次等待的纳秒数.
+     */
+    private static final long CLAIM_PARK_NANOS = 1000L;
+
+    /**
+     * @param bufferSize 缓冲区大小，会被向上取整为2的幂
+     * @param factory    事件工厂
+     * @param handler    事件处理者
+     */
+    public RingBufferConsumer(int bufferSize, EventFactory<E> factory, EventHandler<E> handler) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The param bufferSize must be positive.");
+        }
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(handler);
+        final int size = (bufferSize == 1 ? 1 : 1 << (32 - Integer.numberOfLeadingZeros(bufferSize - 1)));
+        this.entries = new Object[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.newInstance();
+        }
+        this.mask = size - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(size);
+        this.available = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            available.set(i, -1);
+        }
+        this.handler = handler;
+    }
+
+    @Override
+    public boolean start() {
+        delegate.checkStart(this);
+        this.state = State.RUNNING;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName(getClass().getSimpleName() + "-" + t.getId());
+            return t;
+        });
+        executor.execute(this);
+        return true;
+    }
+
+    @Override
+    public long claim() {
+        long sequence;
+        int tries = 0;
+        while ((sequence = tryClaim()) < 0) {
+            if (state != State.RUNNING) {
+                delegate.checkRunning(this);
+            }
+            //先让出CPU给消费线程，仍然已满时再park
+            if (++tries <= CLAIM_YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, CLAIM_PARK_NANOS);
+            }
+        }
+        return sequence;
+    }
+
+    @Override
+    public long tryClaim() {
+        final long wrap = consumed.get() + entries.length;
+        long current;
+        do {
+            current = cursor.get();
+            if (current + 1 > wrap) {
+                return -1;
+            }
+        } while (!cursor.compareAndSet(current, current + 1));
+        return current + 1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * 发布之后如果消费线程正在等待，那么唤醒它.
+     * <p>槽位标记的写入与读取{@link #waiting}之间需要一个StoreLoad屏障，与消费线程设置waiting之后的再次检查配对.</p>
+     */
+    @Override
+    public void publish(long sequence) {
+        available.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+        UNSAFE.fullFence();
+        if (waiting) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    private boolean isAvailable(long sequence) {
+        return available.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+    }
+
+    @Override
+    public final void run() {
+        consumerThread = Thread.currentThread();
+        long next = consumed.get() + 1;
+        try {
+            while (state == State.RUNNING) {
+                if (isAvailable(next) || await(next)) {
+                    next = process(next);
+                }
+            }
+            if (consumeLeft) {
+                while (isAvailable(next)) {
+                    next = process(next);
+                }
+            }
+        } finally {
+            CompletableFuture<Void> future = this.future;
+            if (future != null && !future.isDone()) {
+                future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 处理从next开始所有连续发布的事件，然后一次性推进{@link #consumed}.
+     *
+     * @return 下一个待处理的序号
+     */
+    private long process(long next) {
+        long last = next;
+        while (isAvailable(last + 1)) {
+            ++last;
+        }
+        for (long sequence = next; sequence <= last; sequence++) {
+            try {
+                handler.onEvent(get(sequence), sequence);
+            } catch (RuntimeException e) {
+                handleUncheckedException(e);
+            }
+        }
+        consumed.lazySet(last);
+        return last + 1;
+    }
+
+    /**
+     * 先自旋，然后park直到序号被发布或者被终结.
+     *
+     * @return true, 如果序号已被发布
+     */
+    private boolean await(long sequence) {
+        for (int i = 0; i < SPIN_TRIES; i++) {
+            if (isAvailable(sequence)) {
+                return true;
+            }
+        }
+        waiting = true;
+        try {
+            while (!isAvailable(sequence)) {
+                if (state != State.RUNNING) {
+                    return false;
+                }
+                LockSupport.park(this);
+            }
+            return true;
+        } finally {
+            waiting = false;
+        }
+    }
+
+    protected void handleUncheckedException(RuntimeException e) {
+        if (exceptionHandler != null) {
+            exceptionHandler.uncaughtException(Thread.currentThread(), e);
+        } else if (log != null) {
+            log.error("A RuntimeException is thrown when calling the 'onEvent(E event, long sequence)' method.", e);
+        }
+    }
+
+    public void setUncaughtExceptionHandler(UncaughtExceptionHandler handler) {
+        Objects.requireNonNull(handler);
+        this.exceptionHandler = handler;
+    }
+
+    /**
+     * 终结，已经发布的事件仍会被处理.
+     */
+    @Override
+    public Future<Void> terminate() {
+        return terminate(true);
+    }
+
+    @Override
+    public Future<Void> terminateNow() {
+        return terminate(false);
+    }
+
+    private Future<Void> terminate(boolean consumeLeft) {
+        delegate.checkTerminated(this);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        this.future = future;
+        this.consumeLeft = consumeLeft;
+        this.state = State.TERMINATED;
+        executor.shutdown();
+        LockSupport.unpark(consumerThread);
+        return future;
+    }
+
+    /**
+     * 得到缓冲区大小.
+     */
+    public int getBufferSize() {
+        return entries.length;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+}
@@ -0,0 +1,247 @@
+package consumer.scheduler;
+
+import consumer.AbstractQueuedConsumer;
+import consumer.Consumer;
+import consumer.cas.backpressure.BackpressurePolicy;
+import consumer.cas.backpressure.ParkPolicy;
+import consumer.lifecycle.StateCheckDelegate;
+import consumer.queue.SQueue;
+import consumer.queue.cas.MpmcBasedQueue;
+import consumer.queue.cas.MpscBasedQueue;
+import consumer.util.RangeSupplier;
+import consumer.util.Util;
+import org.slf4j.Logger;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static consumer.util.UnsafeAccess.UNSAFE;
+
+/**
+ * {@link Consumer}骨架实现，没有专属的消费线程，而是由{@link CarrierScheduler}的载体线程执行(actor风格).
+ * <p>任务提交后，如果消费者尚未被调度，那么将其放入调度器的运行队列；载体线程每次最多消费{@link #batchSize}个任务，
+ * 如果队列中仍有任务，那么重新调度以便其它消费者得到执行.同一时刻只有一个载体线程在执行同一个消费者，所以任务仍按
+ * 提交顺序被消费，并且可以使用单消费者队列.</p>
+ *
+ * @author skywalker
+ */
+public abstract class AbstractScheduledConsumer<T> implements Consumer<T>, Runnable {
+
+    protected final int queueSize;
+    protected final StateCheckDelegate delegate;
+    protected UncaughtExceptionHandler handler;
+    protected SQueue<T> jobQueue;
+
+    private final CarrierScheduler scheduler;
+    private BackpressurePolicy<T> backpressurePolicy = new ParkPolicy<T>();
+    /**
+     * 每次被调度时最多消费的任务数.
+     */
+    private int batchSize = AbstractQueuedConsumer.DEFAULT_BATCH_SIZE;
+    /**
+     * 是否已被放入运行队列或者正在被执行.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile State state = State.INIT;
+    private volatile boolean consumeLeft = false;
+    private volatile CompletableFuture<Void> future;
+
+    private final Logger log = Util.getLogger(this.getClass());
+    private final java.util.function.Consumer<T> sink = this::doConsume;
+    private final BackpressurePolicy.Target<T> target = new BackpressurePolicy.Target<T>() {
+        @Override
+        public boolean offer(T task) {
+            return submit(task);
+        }
+
+        @Override
+        public T poll() {
+            return jobQueue.poll();
+        }
+
+        @Override
+        public void execute(T task) {
+            doConsume(task);
+        }
+    };
+
+    public AbstractScheduledConsumer(int queueSize, CarrierScheduler scheduler) {
+        Objects.requireNonNull(scheduler);
+        this.queueSize = queueSize;
+        this.scheduler = scheduler;
+        this.delegate = StateCheckDelegate.getInstance();
+    }
+
+    @Override
+    public final boolean start() {
+        delegate.checkStart(this);
+        this.jobQueue = (backpressurePolicy.requiresConcurrentPoll() ?
+                new MpmcBasedQueue<T>(queueSize) : new MpscBasedQueue<T>(queueSize));
+        this.state = State.RUNNING;
+        return true;
+    }
+
+    @Override
+    public final boolean submit(T task) {
+        boolean result = jobQueue.offer(task);
+        if (result) {
+            scheduleIfNecessary();
+        }
+        return result;
+    }
+
+    @Override
+    public final void submitSync(T task) throws InterruptedException {
+        if (!submit(task)) {
+            backpressurePolicy.onFull(target, task);
+        }
+    }
+
+    @Override
+    public final int submitAll(T[] tasks, int from, int to) {
+        return submitAll(RangeSupplier.of(tasks, from, to));
+    }
+
+    @Override
+    public final int submitAll(List<T> tasks, int from, int to) {
+        return submitAll(RangeSupplier.of(tasks, from, to));
+    }
+
+    private int submitAll(RangeSupplier<T> supplier) {
+        int limit = supplier.remaining();
+        int count = (limit == 0 ? 0 : jobQueue.fill(supplier, limit));
+        if (count > 0) {
+            scheduleIfNecessary();
+        }
+        return count;
+    }
+
+    /**
+     * 如果当前没有被调度，那么放入运行队列.
+     * <p>入队的发布与读取{@link #scheduled}之间需要一个StoreLoad屏障，与载体线程清除标记后检查队列配对，
+     * 否则任务可能滞留在队列中.</p>
+     */
+    private void scheduleIfNecessary() {
+        UNSAFE.fullFence();
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 由载体线程执行，消费一批任务后释放调度标记，如果仍有任务或者需要完成终结，那么重新调度.
+     */
+    @Override
+    public final void run() {
+        try {
+            if (state == State.TERMINATED && (!consumeLeft || jobQueue.isEmpty())) {
+                complete();
+                return;
+            }
+            if (jobQueue.drain(sink, batchSize) > 0) {
+                backpressurePolicy.signalNotFull();
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        //终结时如果正在被执行，那么由这里完成future
+        if (!jobQueue.isEmpty() || (state == State.TERMINATED && !future.isDone())) {
+            scheduleIfNecessary();
+        }
+    }
+
+    private void complete() {
+        CompletableFuture<Void> future = this.future;
+        if (future != null && !future.isDone()) {
+            future.complete(null);
+        }
+    }
+
+    private void doConsume(T task) {
+        try {
+            consume(task);
+        } catch (RuntimeException e) {
+            handleUncheckedException(e);
+        }
+    }
+
+    /**
+     * 处理{@link RuntimeException}，语义同{@link AbstractQueuedConsumer}.
+     */
+    protected void handleUncheckedException(RuntimeException e) {
+        if (handler != null) {
+            handler.uncaughtException(Thread.currentThread(), e);
+        } else if (log != null) {
+            log.error("A RuntimeException is thrown when calling the 'consume(T task)' method.", e);
+        }
+    }
+
+    @Override
+    public void setUncaughtExceptionHandler(UncaughtExceptionHandler handler) {
+        Objects.requireNonNull(handler);
+        this.handler = handler;
+    }
+
+    /**
+     * 终结，队列中剩余的任务仍会被消费.
+     */
+    @Override
+    public final Future<Void> terminate() {
+        return terminate(true);
+    }
+
+    /**
+     * 立即终结，队列中剩余的任务被丢弃，正在执行的一批任务不会被中断.
+     */
+    @Override
+    public final Future<Void> terminateNow() {
+        return terminate(false);
+    }
+
+    private Future<Void> terminate(boolean consumeLeft) {
+        delegate.checkTerminated(this);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        this.future = future;
+        this.consumeLeft = consumeLeft;
+        this.state = State.TERMINATED;
+        backpressurePolicy.release();
+        //由载体线程完成future，保证在正在执行的一批任务之后
+        scheduleIfNecessary();
+        return future;
+    }
+
+    /**
+     * 设置每次被调度时最多消费的任务数，越小则各消费者之间越公平.
+     *
+     * @param batchSize 必须为正数
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The param batchSize must be positive.");
+        }
+        delegate.checkStart(this);
+        this.batchSize = batchSize;
+    }
+
+    public void setBackpressurePolicy(BackpressurePolicy<T> backpressurePolicy) {
+        Objects.requireNonNull(backpressurePolicy);
+        delegate.checkStart(this);
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+}
@@ -0,0 +1,57 @@
+package consumer.scheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 由固定数量的载体线程组成的共享调度器，多个{@link AbstractScheduledConsumer}复用这些线程.
+ * <p>有待处理任务的消费者被放入共享的运行队列，载体线程每次为一个消费者最多处理一批任务，然后将其重新调度，
+ * 这样大量低流量的消费者不再需要各自的专属线程.</p>
+ *
+ * @author skywalker
+ */
+public class CarrierScheduler {
+
+    private final ExecutorService carriers;
+
+    public CarrierScheduler(int carriers) {
+        if (carriers < 1) {
+            throw new IllegalArgumentException("The param carriers must be positive.");
+        }
+        final AtomicInteger index = new AtomicInteger();
+        final ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r);
+            t.setName("CarrierScheduler-carrier-" + index.getAndIncrement());
+            return t;
+        };
+        this.carriers = Executors.newFixedThreadPool(carriers, threadFactory);
+    }
+
+    /**
+     * 将消费者放入运行队列.
+     */
+    void schedule(AbstractScheduledConsumer<?> consumer) {
+        carriers.execute(consumer);
+    }
+
+    /**
+     * 关闭调度器，已在运行队列中的消费者仍会被执行，但不再接受新的调度.
+     * <p>应在所有使用此调度器的消费者终结之后调用.</p>
+     */
+    public void shutdown() {
+        carriers.shutdown();
+    }
+
+    /**
+     * 等待所有载体线程退出.
+     *
+     * @return true, 如果在超时之前所有载体线程均已退出
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return carriers.awaitTermination(timeout, unit);
+    }
+
+}
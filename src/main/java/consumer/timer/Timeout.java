@@ -0,0 +1,29 @@
+package consumer.timer;
+
+/**
+ * 延迟提交的任务的句柄，参见{@link TimingWheel#schedule(Object, long)}.
+ *
+ * @author skywalker
+ */
+public interface Timeout {
+
+    /**
+     * 取消尚未到期的任务，时间复杂度为O(1).
+     *
+     * @return true, 如果取消成功，false表示已经到期或者已被取消
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+
+    /**
+     * 是否已经到期并被消费线程取出.
+     */
+    boolean isExpired();
+
+    /**
+     * 得到到期时间，以{@link System#nanoTime()}为基准.
+     */
+    long getDeadline();
+
+}
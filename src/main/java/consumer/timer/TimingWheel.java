@@ -0,0 +1,337 @@
+package consumer.timer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 哈希时间轮: 时间被划分为固定长度的tick，到期时间落在同一tick的任务位于同一个桶中，桶按tick取模排列成环.
+ * 插入以及取消都是O(1)的，所以可以容纳数以百万计的定时任务；精度为一个tick，任务不会早于其到期时间被取出.
+ * <p>任何线程都可以{@link #schedule(Object, long)}: 任务先被压入一个无锁栈，由推进时间轮的线程转移到桶中.
+ * 时间轮由消费线程在获取任务时推进({@link #poll(long)})，同一时刻只有一个线程持有推进权，其它线程直接返回，
+ * 所以不需要额外的定时线程.被取消的任务在其所在的桶下一次被访问时移除.</p>
+ *
+ * @author skywalker
+ */
+public final class TimingWheel<T> {
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Node<T>[] buckets;
+    /**
+     * tick的起点.
+     */
+    private final long origin;
+    /**
+     * 新提交的任务，由推进时间轮的线程转移到桶中.
+     */
+    private final AtomicReference<Node<T>> inbox = new AtomicReference<>();
+    /**
+     * 尚未到期取出以及取消的任务数.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    /**
+     * 已经到期但尚未被取出的任务，只被持有推进权的线程访问.
+     */
+    private final ArrayDeque<Node<T>> ready = new ArrayDeque<>();
+    /**
+     * 已经处理过的最大tick，只被持有推进权的线程访问.
+     */
+    private long processed = 0;
+    /**
+     * 下一次需要推进的时间，NONE表示时间轮中没有任务.
+     */
+    private volatile long nextNanos = NONE;
+
+    /**
+     * @param tick          tick的长度(纳秒)，即精度，必须为正数
+     * @param ticksPerWheel 桶的数量，向上取整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tick, int ticksPerWheel) {
+        if (tick <= 0) {
+            throw new IllegalArgumentException("The param tick must be positive.");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("The param ticksPerWheel must be in (0, 2^30].");
+        }
+        final int size = (ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1);
+        this.tickNanos = tick;
+        this.mask = size - 1;
+        this.buckets = (Node<T>[]) new Node[size];
+        this.origin = System.nanoTime();
+    }
+
+    /**
+     * 提交一个定时任务.
+     *
+     * @param deadline 到期时间，以{@link System#nanoTime()}为基准，已经到期时在下一次推进时被取出
+     */
+    public Timeout schedule(T task, long deadline) {
+        final Node<T> node = new Node<>(this, task, deadline);
+        pending.incrementAndGet();
+        Node<T> h;
+        do {
+            h = inbox.get();
+            node.next = h;
+        } while (!inbox.compareAndSet(h, node));
+        return node;
+    }
+
+    /**
+     * 给定到期时间的任务是否早于推进线程计划醒来的时间，在{@link #schedule(Object, long)}之后调用，
+     * 如果返回true，那么提交者需要唤醒正在等待的消费线程.
+     */
+    public boolean needsWakeup(long deadline) {
+        final long next = nextNanos;
+        return next == NONE || deadline - next < 0;
+    }
+
+    /**
+     * 是否有尚未到期取出或者取消的任务.
+     */
+    public boolean hasPending() {
+        return pending.get() > 0;
+    }
+
+    /**
+     * 是否有新提交的任务尚未被转移到桶中.
+     */
+    public boolean hasSubmitted() {
+        return inbox.get() != null;
+    }
+
+    /**
+     * 得到尚未到期取出或者取消的任务数.
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    /**
+     * 推进时间轮并取出一个到期的任务.没有新提交的任务并且尚未到下一次推进的时间时只需两次volatile读.
+     *
+     * @param now 当前时间，{@link System#nanoTime()}
+     * @return null, 如果没有到期的任务或者其它线程正在推进
+     */
+    public T poll(long now) {
+        final long next = nextNanos;
+        if ((next == NONE || now - next < 0) && inbox.get() == null) {
+            return null;
+        }
+        if (!advancing.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            if (ready.isEmpty()) {
+                advance(now);
+            }
+            Node<T> node;
+            while ((node = ready.poll()) != null) {
+                if (node.expire()) {
+                    final T task = node.task;
+                    node.task = null;
+                    return task;
+                }
+            }
+            return null;
+        } finally {
+            publishNext(now);
+            advancing.set(false);
+        }
+    }
+
+    /**
+     * 得到距离下一次推进的纳秒数.
+     *
+     * @return -1, 如果时间轮中没有任务
+     */
+    public long nanosUntilNext(long now) {
+        if (inbox.get() != null) {
+            return 0L;
+        }
+        final long next = nextNanos;
+        return (next == NONE ? -1L : Math.max(0L, next - now));
+    }
+
+    private long tickOf(long nanos) {
+        final long elapsed = nanos - origin;
+        //向上取整，保证任务不会被提前取出
+        return (elapsed <= 0 ? 0L : (elapsed + tickNanos - 1) / tickNanos);
+    }
+
+    private void advance(long now) {
+        transfer();
+        final long current = (now - origin) / tickNanos;
+        if (current <= processed) {
+            return;
+        }
+        //落后超过一圈时每个桶只需访问一次
+        final long from = Math.max(processed + 1, current - mask);
+        for (long tick = from; tick <= current; tick++) {
+            expire((int) tick & mask, current);
+        }
+        processed = current;
+    }
+
+    /**
+     * 将新提交的任务按提交顺序转移到桶中.
+     */
+    private void transfer() {
+        Node<T> node = inbox.getAndSet(null);
+        Node<T> reversed = null;
+        while (node != null) {
+            final Node<T> next = node.next;
+            node.next = reversed;
+            reversed = node;
+            node = next;
+        }
+        while (reversed != null) {
+            final Node<T> next = reversed.next;
+            reversed.next = null;
+            if (reversed.state == Node.PENDING) {
+                reversed.tick = tickOf(reversed.deadline);
+                if (reversed.tick <= processed) {
+                    ready.add(reversed);
+                } else {
+                    link(reversed);
+                }
+            }
+            reversed = next;
+        }
+    }
+
+    private void link(Node<T> node) {
+        final int index = (int) node.tick & mask;
+        final Node<T> head = buckets[index];
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        buckets[index] = node;
+    }
+
+    private void unlink(int index, Node<T> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            buckets[index] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = node.next = null;
+    }
+
+    /**
+     * 将桶中到期的任务移到ready中，同时移除已被取消的任务，之后几圈才到期的任务保留.
+     */
+    private void expire(int index, long current) {
+        Node<T> node = buckets[index];
+        while (node != null) {
+            final Node<T> next = node.next;
+            if (node.state != Node.PENDING) {
+                unlink(index, node);
+            } else if (node.tick <= current) {
+                unlink(index, node);
+                ready.add(node);
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * 发布下一次推进的时间: 有已到期的任务时为现在，否则为下一个非空桶的tick.
+     */
+    private void publishNext(long now) {
+        if (!ready.isEmpty() || inbox.get() != null) {
+            nextNanos = now;
+            return;
+        }
+        if (pending.get() <= 0) {
+            nextNanos = NONE;
+            return;
+        }
+        for (long tick = processed + 1, end = processed + mask + 1; tick <= end; tick++) {
+            if (buckets[(int) tick & mask] != null) {
+                nextNanos = origin + tick * tickNanos;
+                return;
+            }
+        }
+        nextNanos = NONE;
+    }
+
+    /**
+     * 时间轮的节点，同时作为{@link Timeout}返回给提交者.
+     */
+    private static final class Node<T> implements Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> stateUpdater =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "state");
+
+        private final TimingWheel<T> wheel;
+        private final long deadline;
+        private T task;
+        private long tick;
+        /**
+         * 位于新提交栈中时只使用next，位于桶中时为双向链表.
+         */
+        private Node<T> next;
+        private Node<T> prev;
+        private volatile int state = PENDING;
+
+        private Node(TimingWheel<T> wheel, T task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        private boolean expire() {
+            if (stateUpdater.compareAndSet(this, PENDING, EXPIRED)) {
+                wheel.pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 只修改状态并释放任务，节点在其所在的桶下一次被访问时移除.
+         */
+        @Override
+        public boolean cancel() {
+            if (stateUpdater.compareAndSet(this, PENDING, CANCELLED)) {
+                task = null;
+                wheel.pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+
+    }
+
+}
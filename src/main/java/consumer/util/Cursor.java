@@ -0,0 +1,38 @@
+package consumer.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程私有的轮询游标，应配合{@link ThreadLocal}使用.
+ *
+ * @author skywalker
+ */
+public final class Cursor {
+
+    private static final AtomicInteger seeds = new AtomicInteger();
+
+    private int index;
+
+    public Cursor(int index) {
+        this.index = index;
+    }
+
+    /**
+     * 为新线程生成游标的初始位置，使各线程的起点错开.
+     */
+    public static int seed() {
+        return seeds.getAndIncrement() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * 返回当前位置并前进一步.
+     *
+     * @param count 轮询的范围
+     */
+    public int next(int count) {
+        int result = index % count;
+        index = (result + 1 == count ? 0 : result + 1);
+        return result;
+    }
+
+}
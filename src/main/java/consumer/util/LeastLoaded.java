@@ -0,0 +1,46 @@
+package consumer.util;
+
+import consumer.AbstractQueuedConsumer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * "二选一"(power of two choices)的负载均衡: 随机选取两个消费者，返回负载较小的那个.
+ * <p>负载即队列中积压的任务数，如果按处理时间加权，那么为(积压数 + 1) * 平均处理时间，即新任务的预计等待时间.</p>
+ *
+ * @author skywalker
+ */
+public final class LeastLoaded {
+
+    private LeastLoaded() {
+    }
+
+    /**
+     * 从candidates中选择一个消费者.
+     *
+     * @param candidates 候选的消费者，不能为空
+     * @param weighted   是否按{@link AbstractQueuedConsumer#getAverageServiceNanos()}加权
+     */
+    public static <C extends AbstractQueuedConsumer<?>> C choose(List<C> candidates, boolean weighted) {
+        final int count = candidates.size();
+        if (count == 1) {
+            return candidates.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(count);
+        int second = first + 1 + random.nextInt(count - 1);
+        if (second >= count) {
+            second -= count;
+        }
+        final C a = candidates.get(first);
+        final C b = candidates.get(second);
+        return (load(b, weighted) < load(a, weighted) ? b : a);
+    }
+
+    private static long load(AbstractQueuedConsumer<?> consumer, boolean weighted) {
+        final long pending = consumer.getPendingCount();
+        return (weighted ? (pending + 1) * Math.max(1L, consumer.getAverageServiceNanos()) : pending);
+    }
+
+}
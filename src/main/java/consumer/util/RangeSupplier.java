@@ -0,0 +1,54 @@
+package consumer.util;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 依次提供数组或{@link List}中[from, to)区间内的元素，用于批量提交.
+ *
+ * @author skywalker
+ */
+public abstract class RangeSupplier<T> implements Supplier<T> {
+
+    protected int index;
+    protected final int to;
+
+    private RangeSupplier(int from, int to) {
+        this.index = from;
+        this.to = to;
+    }
+
+    /**
+     * 剩余的元素数量.
+     */
+    public int remaining() {
+        return to - index;
+    }
+
+    public static <T> RangeSupplier<T> of(T[] array, int from, int to) {
+        checkRange(array.length, from, to);
+        return new RangeSupplier<T>(from, to) {
+            @Override
+            public T get() {
+                return array[index++];
+            }
+        };
+    }
+
+    public static <T> RangeSupplier<T> of(List<T> list, int from, int to) {
+        checkRange(list.size(), from, to);
+        return new RangeSupplier<T>(from, to) {
+            @Override
+            public T get() {
+                return list.get(index++);
+            }
+        };
+    }
+
+    private static void checkRange(int length, int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + length);
+        }
+    }
+
+}
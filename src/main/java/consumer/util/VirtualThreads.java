@@ -0,0 +1,51 @@
+package consumer.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程(JDK 21+)支持，通过反射调用{@code Thread.ofVirtual()}，这样本库仍然可以在Java 8上编译和运行.
+ *
+ * @author skywalker
+ */
+public final class VirtualThreads {
+
+    /**
+     * {@code Thread.ofVirtual().factory()}，如果当前JDK不支持虚拟线程，那么为null.
+     */
+    private static final ThreadFactory factory = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private static ThreadFactory lookup() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程.
+     */
+    public static boolean isSupported() {
+        return (factory != null);
+    }
+
+    /**
+     * 得到创建虚拟线程的{@link ThreadFactory}.
+     *
+     * @throws UnsupportedOperationException 如果当前JDK不支持虚拟线程
+     */
+    public static ThreadFactory factory() {
+        if (factory == null) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later.");
+        }
+        return factory;
+    }
+
+}
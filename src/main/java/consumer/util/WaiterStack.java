@@ -0,0 +1,153 @@
+package consumer.util;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的等待者栈，配合{@link LockSupport#park(Object)}/{@link LockSupport#unpark(Thread)}使用.
+ * <p>等待方应遵循"先发布再检查"的协议: 先{@link #push()}，然后再次检查等待的条件，只有条件仍不满足时才park.
+ * 通知方在改变条件之后、调用{@link #isEmpty()}之前需要一个StoreLoad屏障(比如{@link sun.misc.Unsafe#fullFence()})，
+ * 与入栈时的CAS配对，这样就不会丢失唤醒.</p>
+ *
+ * @author skywalker
+ */
+public final class WaiterStack {
+
+    private final AtomicReference<Waiter> head = new AtomicReference<>();
+
+    /**
+     * 将当前线程作为等待者入栈.
+     */
+    public Waiter push() {
+        final Waiter waiter = new Waiter(Thread.currentThread());
+        Waiter h;
+        do {
+            h = head.get();
+            waiter.next = h;
+        } while (!head.compareAndSet(h, waiter));
+        return waiter;
+    }
+
+    /**
+     * 取消等待.
+     *
+     * @return false，如果在取消之前已经被唤醒
+     */
+    public boolean cancel(Waiter waiter) {
+        if (waiter.cancel()) {
+            clean();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 移除已取消的节点: 先弹出栈顶的，再将其余的从链表中摘除，所以栈的大小不会随限时等待的超时次数增长.
+     * <p>摘除只会跳过已取消的节点(状态不可逆)，所以并发的摘除最多使某个已取消的节点暂时残留，不会丢失等待者.</p>
+     */
+    private void clean() {
+        Waiter h;
+        while ((h = head.get()) != null && h.isCancelled()) {
+            head.compareAndSet(h, h.next);
+        }
+        if (h == null) {
+            return;
+        }
+        Waiter p = h;
+        Waiter n;
+        while ((n = p.next) != null) {
+            if (n.isCancelled()) {
+                p.next = n.next;
+            } else {
+                p = n;
+            }
+        }
+    }
+
+    /**
+     * 遍历得到栈中的节点数，包括已取消但尚未移除的节点，用于监控，时间复杂度为O(n).
+     */
+    public int size() {
+        int size = 0;
+        for (Waiter waiter = head.get(); waiter != null; waiter = waiter.next) {
+            ++size;
+        }
+        return size;
+    }
+
+    /**
+     * 当前是否没有等待者.
+     */
+    public boolean isEmpty() {
+        return head.get() == null;
+    }
+
+    /**
+     * 弹出并唤醒一个仍在等待的线程，已取消的等待者被直接丢弃.
+     */
+    public void signalOne() {
+        Waiter waiter;
+        while ((waiter = head.get()) != null) {
+            if (head.compareAndSet(waiter, waiter.next) && waiter.signal()) {
+                LockSupport.unpark(waiter.thread);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 唤醒所有正在等待的线程.
+     */
+    public void signalAll() {
+        Waiter waiter = head.getAndSet(null);
+        while (waiter != null) {
+            if (waiter.signal()) {
+                LockSupport.unpark(waiter.thread);
+            }
+            waiter = waiter.next;
+        }
+    }
+
+    /**
+     * 等待者栈的节点.
+     */
+    public static final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int SIGNALLED = 1;
+        private static final int CANCELLED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Waiter> stateUpdater =
+                AtomicIntegerFieldUpdater.newUpdater(Waiter.class, "state");
+
+        private final Thread thread;
+        private volatile Waiter next;
+        private volatile int state = WAITING;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        /**
+         * 是否仍在等待，即既没有被唤醒也没有被取消.
+         */
+        public boolean isWaiting() {
+            return state == WAITING;
+        }
+
+        private boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private boolean signal() {
+            return stateUpdater.compareAndSet(this, WAITING, SIGNALLED);
+        }
+
+        private boolean cancel() {
+            return stateUpdater.compareAndSet(this, WAITING, CANCELLED);
+        }
+
+    }
+
+}
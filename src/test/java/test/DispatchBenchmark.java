@@ -0,0 +1,85 @@
+package test;
+
+import consumer.Consumer;
+import consumer.pool.dispatch.RoundRobinStrategy;
+import consumer.pool.dispatch.SingleProducerStrategy;
+import consumer.pool.internal.InternalMPConsumer;
+import consumer.pool.internal.InternalSPConsumer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试{@link consumer.pool.dispatch.DispatchStrategy#acquire()}在不同生产者线程数下的开销，
+ * lockedRoundRobin为原先基于synchronized的实现，作为对照.
+ * <p>运行: main方法，依次使用1 - 64个线程.</p>
+ *
+ * @author skywalker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    private final List<Consumer<String>> consumers = new ArrayList<>();
+    private RoundRobinStrategy<String> roundRobin;
+    private SingleProducerStrategy<String> singleProducer;
+
+    private final Object monitor = new Object();
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < 8; i++) {
+            consumers.add(new InternalSPConsumer<>(16, 1, () -> message -> {}, null));
+        }
+        consumers.add(new InternalMPConsumer<>(16, 1, () -> message -> {}, null));
+        roundRobin = new RoundRobinStrategy<>(consumers);
+        singleProducer = new SingleProducerStrategy<>(consumers);
+    }
+
+    @Benchmark
+    public Consumer<String> lockedRoundRobin() {
+        Consumer<String> result;
+        synchronized (monitor) {
+            result = consumers.get(index);
+            ++index;
+            if (index >= consumers.size()) {
+                index = 0;
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Consumer<String> roundRobin() {
+        return roundRobin.acquire();
+    }
+
+    @Benchmark
+    public Consumer<String> singleProducer() {
+        Consumer<String> consumer = singleProducer.acquire();
+        singleProducer.release(consumer);
+        return consumer;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads <<= 1) {
+            Options options = new OptionsBuilder()
+                    .include(DispatchBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
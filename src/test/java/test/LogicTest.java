@@ -1,16 +1,78 @@
 package test;
 
 import consumer.Consumer;
+import consumer.Deadlined;
+import consumer.Submitable;
+import consumer.cas.AbstractLongCASConsumer;
+import consumer.cas.AbstractMPCASConsumer;
+import consumer.cas.AbstractSPCASConsumer;
+import consumer.cas.backpressure.BackpressurePolicy;
+import consumer.cas.backpressure.CallerRunsPolicy;
+import consumer.cas.backpressure.DropNewestPolicy;
+import consumer.cas.backpressure.DropOldestPolicy;
+import consumer.cas.backpressure.ParkPolicy;
+import consumer.cas.strategy.AdaptiveStrategy;
 import consumer.cas.strategy.BlockStrategy;
+import consumer.cas.strategy.ParkStrategy;
+import consumer.cas.strategy.PollingStrategy;
+import consumer.cas.strategy.RetryStrategy;
+import consumer.codec.StringCodec;
+import consumer.journal.Journal;
+import consumer.journal.JournalingQueue;
+import consumer.lifecycle.LifeCycle;
 import consumer.manager.AbstractLockedManager;
 import consumer.manager.Manager;
+import consumer.lock.AbstractLockedConsumer;
+import consumer.pool.BatchConsumeAction;
 import consumer.pool.ConsumeAction;
 import org.junit.Assert;
 import org.junit.Test;
 import consumer.pool.DefaultConsumerPool;
+import consumer.pool.LongConsumerPool;
+import consumer.pool.dispatch.ConsistentHashRing;
+import consumer.pool.dispatch.LeastLoadedStrategy;
+import consumer.queue.PriorityLanesQueue;
+import consumer.queue.SQueue;
+import consumer.queue.WeightedQueue;
+import consumer.queue.cas.CASQueue;
+import consumer.queue.cas.MpscBasedQueue;
+import consumer.queue.cas.MpscChunkedBasedQueue;
+import consumer.queue.cas.SpscChunkedBasedQueue;
+import consumer.queue.cas.SpscBasedQueue;
+import consumer.queue.locked.ArrayQueue;
+import consumer.queue.locked.EdfQueue;
+import consumer.queue.offheap.OffHeapQueue;
+import consumer.queue.offheap.SharedMemoryQueue;
+import consumer.queue.primitive.LongSQueue;
+import consumer.queue.primitive.MpmcLongQueue;
+import consumer.queue.primitive.MpscLongQueue;
+import consumer.queue.primitive.SpscLongQueue;
+import consumer.queue.spill.SpillingQueue;
+import consumer.ring.RingBufferConsumer;
+import consumer.scheduler.AbstractScheduledConsumer;
+import consumer.scheduler.CarrierScheduler;
+import consumer.timer.Timeout;
+import consumer.timer.TimingWheel;
+import consumer.util.RangeSupplier;
+import consumer.util.VirtualThreads;
+import consumer.util.WaiterStack;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /**
  * 测试逻辑的正确性.
@@ -106,4 +168,1503 @@ public class LogicTest {
         System.out.println("Total consumed: " + counter);
     }
 
+    /**
+     * 测试队列的批量获取.
+     */
+    @Test
+    public void drain() {
+        List<SQueue<Integer>> queues = new ArrayList<>();
+        queues.add(new ArrayQueue<>(8));
+        queues.add(new MpscBasedQueue<>(8));
+        queues.add(new CASQueue<>(8));
+        for (SQueue<Integer> queue : queues) {
+            for (int i = 0; i < 5; i++) {
+                Assert.assertTrue(queue.offer(i));
+            }
+            List<Integer> drained = new ArrayList<>();
+            Assert.assertEquals(3, queue.drain(drained::add, 3));
+            Assert.assertEquals(2, queue.drain(drained::add, 8));
+            Assert.assertEquals(0, queue.drain(drained::add, 8));
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(i, drained.get(i).intValue());
+            }
+            Assert.assertTrue(queue.isEmpty());
+        }
+    }
+
+    /**
+     * 测试批量提交.
+     */
+    @Test
+    public void submitAll() throws ExecutionException, InterruptedException {
+        AtomicLong counter = new AtomicLong();
+        List<Consumer<Integer>> consumers = new ArrayList<>();
+        consumers.add(new AbstractLockedConsumer<Integer>(16) {
+            @Override
+            public void consume(Integer task) {
+                counter.incrementAndGet();
+            }
+        });
+        consumers.add(new AbstractSPCASConsumer<Integer>(16, 1) {
+            @Override
+            public void consume(Integer task) {
+                counter.incrementAndGet();
+            }
+        });
+        Integer[] tasks = new Integer[20];
+        Arrays.fill(tasks, 1);
+        long submitted = 0;
+        for (Consumer<Integer> consumer : consumers) {
+            Assert.assertTrue(consumer.start());
+            int accepted = consumer.submitAll(tasks, 2, 12);
+            Assert.assertEquals(10, accepted);
+            submitted += accepted;
+            submitted += consumer.submitAll(Arrays.asList(tasks), 0, 4);
+            consumer.terminate().get();
+        }
+        Assert.assertEquals(submitted, counter.get());
+    }
+
+    /**
+     * 测试微批次消费，包括按大小以及按等待时间触发.
+     */
+    @Test
+    public void microBatch() throws ExecutionException, InterruptedException {
+        AtomicLong counter = new AtomicLong();
+        AtomicLong maxBatch = new AtomicLong();
+        BatchConsumeAction<String> action = messages -> {
+            counter.addAndGet(messages.size());
+            maxBatch.accumulateAndGet(messages.size(), Math::max);
+        };
+        DefaultConsumerPool<String> pool = new DefaultConsumerPool<>(false, 1, 1, 64, () -> action);
+        pool.setMicroBatch(8, 20, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.start());
+        Consumer<String> consumer = pool.acquire();
+        for (int i = 0; i < 20; i++) {
+            consumer.submitSync("message " + i);
+        }
+        Thread.sleep(500);
+        Assert.assertEquals(20, counter.get());
+        Assert.assertTrue(maxBatch.get() <= 8);
+        pool.terminate().get();
+    }
+
+    /**
+     * 测试基于park/unpark的等待策略不会丢失唤醒，并且terminate时可以唤醒全部消费线程.
+     */
+    @Test
+    public void park() throws ExecutionException, InterruptedException, TimeoutException {
+        AtomicLong counter = new AtomicLong();
+        DefaultConsumerPool<Integer> pool = new DefaultConsumerPool<>(false, 2, 2, 16,
+                () -> message -> counter.incrementAndGet());
+        pool.setRetryStrategy(new ParkStrategy<>());
+        Assert.assertTrue(pool.start());
+        ExecutorService service = Executors.newFixedThreadPool(4);
+        for (int p = 0; p < 4; p++) {
+            Consumer<Integer> consumer = pool.acquire();
+            service.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    while (!consumer.submit(i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+        service.shutdown();
+        Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (counter.get() < 40000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(40000, counter.get());
+        pool.terminate().get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 测试队列已满时的生产者策略.
+     */
+    @Test
+    public void backpressure() throws ExecutionException, InterruptedException {
+        List<BackpressurePolicy<Integer>> policies = Arrays.asList(new ParkPolicy<>(), new CallerRunsPolicy<>(),
+                new DropNewestPolicy<>());
+        for (BackpressurePolicy<Integer> policy : policies) {
+            AtomicLong counter = new AtomicLong();
+            AbstractSPCASConsumer<Integer> consumer = new AbstractSPCASConsumer<Integer>(4, 1) {
+                @Override
+                public void consume(Integer task) {
+                    counter.incrementAndGet();
+                    LockSupport.parkNanos(10000);
+                }
+            };
+            consumer.setBackpressurePolicy(policy);
+            Assert.assertTrue(consumer.start());
+            for (int i = 0; i < 1000; i++) {
+                consumer.submitSync(i);
+            }
+            consumer.terminate().get();
+            Assert.assertTrue(policy.getFired() > 0);
+            if (policy instanceof DropNewestPolicy) {
+                Assert.assertEquals(1000, counter.get() + policy.getFired());
+            } else {
+                Assert.assertEquals(1000, counter.get());
+            }
+        }
+
+        //丢弃最旧的任务: 队列已空仍无法提交时放弃，而不是一直重试
+        ArrayDeque<Integer> deque = new ArrayDeque<>(Arrays.asList(1, 2));
+        AtomicBoolean accepting = new AtomicBoolean(true);
+        BackpressurePolicy.Target<Integer> target = new BackpressurePolicy.Target<Integer>() {
+            @Override
+            public boolean offer(Integer task) {
+                return accepting.get() && deque.size() < 2 && deque.offer(task);
+            }
+
+            @Override
+            public Integer poll() {
+                return deque.poll();
+            }
+
+            @Override
+            public void execute(Integer task) {
+            }
+        };
+        DropOldestPolicy<Integer> dropOldest = new DropOldestPolicy<>();
+        Assert.assertTrue(dropOldest.onFull(target, 3));
+        Assert.assertEquals(Arrays.asList(2, 3), new ArrayList<>(deque));
+        Assert.assertEquals(1, dropOldest.getFired());
+        accepting.set(false);
+        Assert.assertFalse(dropOldest.onFull(target, 4));
+        Assert.assertTrue(deque.isEmpty());
+    }
+
+    /**
+     * 测试按key分配: 一致性哈希在节点增加时只迁移少部分key，并且相同key的任务按序消费.
+     */
+    @Test
+    public void keyAffinity() throws ExecutionException, InterruptedException {
+        List<Integer> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            nodes.add(i);
+        }
+        ConsistentHashRing<Integer> before = new ConsistentHashRing<>(nodes);
+        nodes.add(10);
+        ConsistentHashRing<Integer> after = new ConsistentHashRing<>(nodes);
+        int moved = 0;
+        for (int key = 0; key < 10000; key++) {
+            if (!before.get(key).equals(after.get(key))) {
+                ++moved;
+            }
+        }
+        Assert.assertTrue("Moved: " + moved, moved < 2000);
+
+        ConcurrentMap<Integer, Integer> last = new ConcurrentHashMap<>();
+        AtomicLong disorder = new AtomicLong();
+        DefaultConsumerPool<int[]> pool = new DefaultConsumerPool<>(false, 4, 1, 64, () -> message -> {
+            Integer previous = last.put(message[0], message[1]);
+            if (previous != null && previous >= message[1]) {
+                disorder.incrementAndGet();
+            }
+        });
+        Assert.assertTrue(pool.start());
+        for (int i = 0; i < 1000; i++) {
+            for (int key = 0; key < 16; key++) {
+                pool.submitSync(key, new int[]{key, i});
+            }
+        }
+        pool.terminate().get();
+        Assert.assertEquals(0, disorder.get());
+        Assert.assertEquals(16, last.size());
+    }
+
+    /**
+     * 测试最小负载分发: 任务处理时间不均时所有任务仍被消费.
+     */
+    @Test
+    public void leastLoaded() throws ExecutionException, InterruptedException {
+        ArrayQueue<Integer> queue = new ArrayQueue<>(4);
+        Assert.assertEquals(0, queue.size());
+        queue.offer(1);
+        queue.offer(2);
+        Assert.assertEquals(2, queue.size());
+
+        AtomicLong counter = new AtomicLong();
+        DefaultConsumerPool<Integer> pool = new DefaultConsumerPool<>(false, 4, 1, 64, () -> task -> {
+            if (task % 100 == 0) {
+                LockSupport.parkNanos(1000000L);
+            }
+            counter.incrementAndGet();
+        });
+        pool.setDispatchStrategyFactory(LeastLoadedStrategy.factory(true));
+        Assert.assertTrue(pool.start());
+        for (int i = 0; i < 1000; i++) {
+            Consumer<Integer> consumer = pool.acquire();
+            consumer.submitSync(i);
+            pool.release(consumer);
+        }
+        pool.terminate().get();
+        Assert.assertEquals(1000, counter.get());
+    }
+
+    /**
+     * 测试弹性伸缩: 积压时增加消费线程，空闲后退回到最少线程数.
+     */
+    @Test
+    public void elasticThreads() throws ExecutionException, InterruptedException {
+        AtomicLong counter = new AtomicLong();
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        AbstractMPCASConsumer<Integer> consumer = new AbstractMPCASConsumer<Integer>(256, 1) {
+            @Override
+            public void consume(Integer task) {
+                names.add(Thread.currentThread().getName());
+                LockSupport.parkNanos(100000L);
+                counter.incrementAndGet();
+            }
+        };
+        consumer.setBatchSize(1);
+        consumer.setElasticThreads(1, 4, 8, 50, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(consumer.start());
+        Assert.assertEquals(1, consumer.getActiveThreads());
+        for (int i = 0; i < 1000; i++) {
+            consumer.submitSync(i);
+        }
+        while (counter.get() < 1000) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue("Threads: " + names, names.size() > 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (consumer.getActiveThreads() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, consumer.getActiveThreads());
+        consumer.submitSync(1000);
+        consumer.terminate().get();
+        Assert.assertEquals(1001, counter.get());
+    }
+
+    /**
+     * 测试虚拟线程模式，JDK 21以下应抛出{@link UnsupportedOperationException}.
+     */
+    @Test
+    public void virtualThreads() throws ExecutionException, InterruptedException {
+        AtomicLong counter = new AtomicLong();
+        Set<Boolean> daemon = ConcurrentHashMap.newKeySet();
+        SimpleConsumer consumer = new SimpleConsumer(16) {
+            @Override
+            public void consume(String task) {
+                daemon.add(Thread.currentThread().isDaemon());
+                counter.incrementAndGet();
+            }
+        };
+        if (!VirtualThreads.isSupported()) {
+            try {
+                consumer.setVirtualThreads(true);
+                Assert.fail();
+            } catch (UnsupportedOperationException ignored) {
+            }
+            return;
+        }
+        consumer.setVirtualThreads(true);
+        Assert.assertTrue(consumer.start());
+        for (int i = 0; i < 100; i++) {
+            consumer.submitSync(String.valueOf(i));
+        }
+        consumer.terminate().get();
+        Assert.assertEquals(100, counter.get());
+        //虚拟线程总是守护线程
+        Assert.assertEquals(Collections.singleton(true), daemon);
+    }
+
+    /**
+     * 测试共享载体线程: 大量消费者复用少量线程，每个消费者的任务仍按顺序、且不被并发执行.
+     */
+    @Test
+    public void carrierScheduler() throws ExecutionException, InterruptedException {
+        CarrierScheduler scheduler = new CarrierScheduler(2);
+        AtomicLong counter = new AtomicLong();
+        AtomicLong disorder = new AtomicLong();
+        Set<String> carriers = ConcurrentHashMap.newKeySet();
+        List<AbstractScheduledConsumer<Integer>> consumers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            AbstractScheduledConsumer<Integer> consumer = new AbstractScheduledConsumer<Integer>(16, scheduler) {
+                int last = -1;
+                final AtomicLong running = new AtomicLong();
+
+                @Override
+                public void consume(Integer task) {
+                    if (running.incrementAndGet() != 1 || task != last + 1) {
+                        disorder.incrementAndGet();
+                    }
+                    last = task;
+                    carriers.add(Thread.currentThread().getName());
+                    counter.incrementAndGet();
+                    running.decrementAndGet();
+                }
+            };
+            consumer.setBatchSize(4);
+            Assert.assertTrue(consumer.start());
+            consumers.add(consumer);
+        }
+        for (int i = 0; i < 50; i++) {
+            for (AbstractScheduledConsumer<Integer> consumer : consumers) {
+                consumer.submitSync(i);
+            }
+        }
+        for (AbstractScheduledConsumer<Integer> consumer : consumers) {
+            consumer.terminate().get();
+        }
+        scheduler.shutdown();
+        Assert.assertEquals(50000, counter.get());
+        Assert.assertEquals(0, disorder.get());
+        Assert.assertTrue(carriers.size() <= 2);
+    }
+
+    /**
+     * 测试预分配环形缓冲区: 多个生产者申请-发布，所有事件按序号被处理，事件对象被复用.
+     */
+    @Test
+    public void ringBuffer() throws ExecutionException, InterruptedException {
+        AtomicLong sum = new AtomicLong();
+        AtomicLong disorder = new AtomicLong();
+        Set<long[]> events = Collections.newSetFromMap(new IdentityHashMap<>());
+        long[] last = {-1};
+        RingBufferConsumer<long[]> ring = new RingBufferConsumer<>(60, () -> new long[1], (event, sequence) -> {
+            if (sequence != last[0] + 1) {
+                disorder.incrementAndGet();
+            }
+            last[0] = sequence;
+            events.add(event);
+            sum.addAndGet(event[0]);
+        });
+        Assert.assertEquals(64, ring.getBufferSize());
+        Assert.assertTrue(ring.start());
+        ExecutorService service = Executors.newFixedThreadPool(4);
+        for (int p = 0; p < 4; p++) {
+            service.execute(() -> {
+                for (int i = 1; i <= 10000; i++) {
+                    long sequence = ring.claim();
+                    ring.get(sequence)[0] = i;
+                    ring.publish(sequence);
+                }
+            });
+        }
+        service.shutdown();
+        Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+        ring.terminate().get();
+        Assert.assertEquals(4 * 10000L * 10001 / 2, sum.get());
+        Assert.assertEquals(0, disorder.get());
+        Assert.assertEquals(64, events.size());
+    }
+
+    /**
+     * 测试long队列与消费者池: 不装箱，按key提交的任务保持顺序.
+     */
+    @Test
+    public void longQueue() throws ExecutionException, InterruptedException, TimeoutException {
+        for (LongSQueue queue : Arrays.asList(new SpscLongQueue(6), new MpscLongQueue(6), new MpmcLongQueue(6))) {
+            Assert.assertTrue(queue.isEmpty());
+            long[] next = {1};
+            Assert.assertEquals(8, queue.fill(() -> next[0]++, 10));
+            Assert.assertFalse(queue.offer(9));
+            Assert.assertEquals(8, queue.size());
+            long[] sum = {0};
+            Assert.assertEquals(3, queue.drain(value -> sum[0] += value, 3));
+            Assert.assertEquals(6, sum[0]);
+            Assert.assertTrue(queue.offer(9));
+            Assert.assertEquals(6, queue.drain(value -> sum[0] += value, 10));
+            Assert.assertEquals(45, sum[0]);
+            Assert.assertTrue(queue.isEmpty());
+        }
+
+        ConcurrentMap<Long, Long> last = new ConcurrentHashMap<>();
+        AtomicLong counter = new AtomicLong();
+        AtomicLong disorder = new AtomicLong();
+        LongConsumerPool pool = new LongConsumerPool(4, 1, 64, () -> message -> {
+            long key = message & 0xF;
+            Long previous = last.put(key, message >>> 4);
+            if (previous != null && previous >= message >>> 4) {
+                disorder.incrementAndGet();
+            }
+            counter.incrementAndGet();
+        });
+        Assert.assertTrue(pool.start());
+        ExecutorService service = Executors.newFixedThreadPool(2);
+        for (int p = 0; p < 2; p++) {
+            final int offset = p * 8;
+            service.execute(() -> {
+                try {
+                    for (long i = 0; i < 5000; i++) {
+                        for (long key = offset; key < offset + 8; key++) {
+                            pool.submitSync(key, (i << 4) | key);
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+        service.shutdown();
+        Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+        pool.terminate().get();
+        Assert.assertEquals(80000, counter.get());
+        Assert.assertEquals(0, disorder.get());
+
+        //等待中的submitSync在消费者被终结时抛出异常，而不是假装提交成功
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AbstractLongCASConsumer consumer = new AbstractLongCASConsumer(8, 1, true) {
+            @Override
+            public void consume(long task) {
+                started.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Assert.assertTrue(consumer.start());
+        Assert.assertTrue(consumer.submit(0L));
+        started.await();
+        while (consumer.submit(0L)) ;
+        FutureTask<Void> producer = new FutureTask<>(() -> {
+            consumer.submitSync(1L);
+            return null;
+        });
+        new Thread(producer).start();
+        Thread.sleep(20);
+        consumer.terminateNow();
+        try {
+            producer.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        blocked.countDown();
+    }
+
+    /**
+     * 测试{@link CASQueue}: 多生产者多消费者，混合使用offer/fill/poll/drain，元素不丢失也不重复.
+     */
+    @Test
+    public void casQueue() throws InterruptedException {
+        CASQueue<Long> queue = new CASQueue<>(12);
+        Assert.assertEquals(16, queue.capacity());
+        AtomicLong sum = new AtomicLong();
+        AtomicLong count = new AtomicLong();
+        ExecutorService service = Executors.newFixedThreadPool(4);
+        for (int p = 0; p < 2; p++) {
+            final boolean batch = (p == 0);
+            service.execute(() -> {
+                long[] next = {1};
+                while (next[0] <= 2000) {
+                    if (batch) {
+                        queue.fill(() -> next[0]++, (int) Math.min(4, 2001 - next[0]));
+                    } else if (queue.offer(next[0])) {
+                        next[0]++;
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            final boolean batch = (c == 0);
+            service.execute(() -> {
+                while (count.get() < 4000) {
+                    if (batch) {
+                        queue.drain(value -> {
+                            sum.addAndGet(value);
+                            count.incrementAndGet();
+                        }, 8);
+                    } else {
+                        Long value = queue.poll();
+                        if (value != null) {
+                            sum.addAndGet(value);
+                            count.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        service.shutdown();
+        Assert.assertTrue(service.awaitTermination(30, TimeUnit.SECONDS));
+        Assert.assertEquals(4000, count.get());
+        Assert.assertEquals(2 * 2000L * 2001 / 2, sum.get());
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(0, queue.size());
+    }
+
+    /**
+     * 测试可增长队列: 初始容量很小，积压时仍可容纳直到最大容量.
+     */
+    @Test
+    public void growable() throws ExecutionException, InterruptedException {
+        SQueue<Integer> spsc = new SpscChunkedBasedQueue<>(8, 100);
+        SQueue<Integer> mpsc = new MpscChunkedBasedQueue<>(8, 100);
+        for (SQueue<Integer> queue : Arrays.asList(spsc, mpsc)) {
+            Assert.assertEquals(128, queue.fill(() -> 1, 1000));
+            Assert.assertFalse(queue.offer(1));
+            Assert.assertEquals(128, queue.drain(value -> {}, 1000));
+            Assert.assertTrue(queue.isEmpty());
+        }
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicLong counter = new AtomicLong();
+        AbstractMPCASConsumer<Integer> consumer = new AbstractMPCASConsumer<Integer>(1024, 1) {
+            @Override
+            public void consume(Integer task) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ignored) {
+                }
+                counter.incrementAndGet();
+            }
+        };
+        consumer.setGrowable(16);
+        Assert.assertTrue(consumer.start());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(consumer.submit(i));
+        }
+        blocked.countDown();
+        consumer.terminate().get();
+        Assert.assertEquals(1000, counter.get());
+    }
+
+    /**
+     * 测试磁盘溢出: 队列已满时任务写入段文件，读回时保持FIFO顺序，终结后段文件被删除.
+     */
+    @Test
+    public void spill() throws ExecutionException, InterruptedException, IOException {
+        File directory = Files.createTempDirectory("spill").toFile();
+        SpillingQueue<String> queue = new SpillingQueue<>(new SpscBasedQueue<>(8), StringCodec.INSTANCE, directory, 256);
+        //空闲段在构造时预先创建
+        File[] spare = directory.listFiles();
+        Assert.assertTrue(spare != null && spare.length == 1);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(queue.offer("task-" + i));
+        }
+        Assert.assertEquals(200, queue.size());
+        Assert.assertTrue(queue.getSpilledCount() > 0);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("task-" + i, queue.poll());
+        }
+        List<String> drained = new ArrayList<>();
+        Assert.assertEquals(100, queue.drain(drained::add, 1000));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("task-" + (i + 100), drained.get(i));
+        }
+        Assert.assertTrue(queue.isEmpty());
+        //sink在锁外被调用，所以消费期间生产者仍然可以溢出
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue(queue.offer("task-" + i));
+        }
+        SpillingQueue<String> spilling = queue;
+        List<String> unspilled = new ArrayList<>();
+        queue.drain(task -> {
+            if (unspilled.size() == 10) {
+                //内存队列的容量为8，第11个任务来自段文件
+                FutureTask<Boolean> producer = new FutureTask<>(() -> spilling.offer("late"));
+                new Thread(producer).start();
+                try {
+                    Assert.assertTrue(producer.get(5, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+            unspilled.add(task);
+        }, 1000);
+        Assert.assertEquals(21, unspilled.size() + queue.size());
+        queue.close();
+
+        List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch blocked = new CountDownLatch(1);
+        AbstractSPCASConsumer<String> consumer = new AbstractSPCASConsumer<String>(16, 1) {
+            @Override
+            public void consume(String task) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ignored) {
+                }
+                consumed.add(task);
+            }
+        };
+        consumer.setSpill(directory, 1024, StringCodec.INSTANCE);
+        Assert.assertTrue(consumer.start());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(consumer.submit("task-" + i));
+        }
+        blocked.countDown();
+        consumer.terminate().get();
+        Assert.assertEquals(1000, consumed.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("task-" + i, consumed.get(i));
+        }
+        File[] left = directory.listFiles();
+        Assert.assertTrue(left != null && left.length == 0);
+        Assert.assertTrue(directory.delete());
+    }
+
+    /**
+     * 测试预写日志: 未被确认的任务在重新打开后被恢复，terminateNow()丢弃的任务在重启后被消费.
+     */
+    @Test
+    public void journal() throws ExecutionException, InterruptedException, IOException {
+        File directory = Files.createTempDirectory("journal").toFile();
+        Journal<String> journal = new Journal<>(directory, 128, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096, 16);
+        SQueue<String> queue = new JournalingQueue<>(journal, new SpscBasedQueue<>(16));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(queue.offer("task-" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("task-" + i, queue.poll());
+        }
+        journal.acknowledge(5);
+        Assert.assertEquals(5, journal.getWatermark());
+        journal.close();
+        journal = new Journal<>(directory, 128, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096, 16);
+        Assert.assertEquals(5, journal.recovered().size());
+        queue = new JournalingQueue<>(journal, new SpscBasedQueue<>(16));
+        Assert.assertTrue(queue.offer("task-10"));
+        for (int i = 5; i <= 10; i++) {
+            Assert.assertEquals("task-" + i, queue.poll());
+        }
+        journal.acknowledge(6);
+        journal.close();
+
+        Set<String> consumed = ConcurrentHashMap.newKeySet();
+        AtomicBoolean released = new AtomicBoolean(false);
+        AbstractMPCASConsumer<String> consumer = new AbstractMPCASConsumer<String>(16, 1) {
+            @Override
+            public void consume(String task) {
+                //模拟崩溃: 日志关闭之前不确认任何任务
+                while (!released.get()) {
+                    Thread.interrupted();
+                    LockSupport.parkNanos(1000000);
+                }
+                //released之后正常返回的任务可能已被确认，不会再被恢复
+                consumed.add(task);
+            }
+        };
+        consumer.setJournal(directory, 256, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096);
+        Assert.assertTrue(consumer.start());
+        for (int i = 0; i < 16; i++) {
+            Assert.assertTrue(consumer.submit("task-" + i));
+        }
+        Future<Void> future = consumer.terminateNow();
+        released.set(true);
+        future.get();
+
+        AbstractMPCASConsumer<String> restarted = new AbstractMPCASConsumer<String>(16, 1) {
+            @Override
+            public void consume(String task) {
+                consumed.add(task);
+            }
+        };
+        restarted.setJournal(directory, 256, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096);
+        Assert.assertTrue(restarted.start());
+        for (int i = 16; i < 100; i++) {
+            restarted.submitSync("task-" + i);
+        }
+        restarted.terminate().get();
+        Assert.assertEquals(100, consumed.size());
+        long deadline = System.currentTimeMillis() + 5000;
+        File[] left;
+        while ((left = directory.listFiles((dir, name) -> name.endsWith(".log"))) != null && left.length > 0 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(left != null && left.length == 0);
+    }
+
+    /**
+     * 测试进程间队列: 两个独立的JVM进程作为生产者，本进程中的消费者按各生产者的顺序消费全部任务.
+     */
+    @Test
+    public void sharedMemoryQueue() throws Exception {
+        File file = File.createTempFile("shm", ".queue");
+        SharedMemoryQueue<String> queue = SharedMemoryQueue.create(file, 4096, StringCodec.INSTANCE, true);
+        ConcurrentMap<Integer, Integer> last = new ConcurrentHashMap<>();
+        AtomicLong counter = new AtomicLong();
+        AtomicLong disorder = new AtomicLong();
+        AbstractSPCASConsumer<String> consumer = new AbstractSPCASConsumer<String>(1024, 1) {
+            @Override
+            public void consume(String task) {
+                int i = Integer.parseInt(task.substring(5));
+                Integer previous = last.put(i / 1000, i);
+                if (previous != null && previous >= i) {
+                    disorder.incrementAndGet();
+                }
+                counter.incrementAndGet();
+            }
+        };
+        consumer.setQueueFactory((capacity, multiProducer, multiConsumer) -> queue);
+        consumer.setRetryStrategy(new PollingStrategy<>());
+        Assert.assertTrue(consumer.start());
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> producers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            producers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    SharedMemoryProducer.class.getName(), file.getAbsolutePath(),
+                    String.valueOf(i * 1000), String.valueOf(i * 1000 + 1000)).inheritIO().start());
+        }
+        for (Process producer : producers) {
+            Assert.assertTrue(producer.waitFor(30, TimeUnit.SECONDS));
+            Assert.assertEquals(0, producer.exitValue());
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (counter.get() < 2000 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        consumer.terminate().get();
+        queue.close();
+        Assert.assertTrue(file.delete());
+        Assert.assertEquals(2000, counter.get());
+        Assert.assertEquals(0, disorder.get());
+    }
+
+    /**
+     * 测试堆外队列: 变长记录跨越数据区末尾时保持顺序，多生产者多消费线程时不丢失任务.
+     */
+    @Test
+    public void offHeapQueue() throws ExecutionException, InterruptedException {
+        OffHeapQueue<String> queue = new OffHeapQueue<>(256, StringCodec.INSTANCE, false, false);
+        for (int round = 0; round < 20; round++) {
+            int n = queue.fill(new Supplier<String>() {
+                int i = 0;
+
+                @Override
+                public String get() {
+                    return "task-" + (i++);
+                }
+            }, 100);
+            Assert.assertTrue(n > 0);
+            Assert.assertEquals(n, queue.size());
+            for (int i = 0; i < n; i++) {
+                Assert.assertEquals("task-" + i, queue.poll());
+            }
+            Assert.assertTrue(queue.isEmpty());
+            Assert.assertTrue(queue.offer("padding-" + round));
+            Assert.assertEquals("padding-" + round, queue.poll());
+        }
+
+        //比至今所有记录都长的任务放不下时fill直接返回，而不是等待消费者腾出空间
+        for (int i = 0; i < 12; i++) {
+            Assert.assertTrue(queue.offer("a"));
+        }
+        char[] chars = new char[100];
+        Arrays.fill(chars, 'b');
+        String large = new String(chars);
+        Assert.assertEquals(0, queue.fill(() -> large, 10));
+        for (int i = 0; i < 12; i++) {
+            Assert.assertEquals("a", queue.poll());
+        }
+        Assert.assertEquals(1, queue.fill(() -> large, 10));
+        Assert.assertEquals(large, queue.poll());
+        Assert.assertTrue(queue.isEmpty());
+
+        AtomicLong counter = new AtomicLong();
+        AbstractMPCASConsumer<String> consumer = new AbstractMPCASConsumer<String>(1024, 2) {
+            @Override
+            public void consume(String task) {
+                counter.incrementAndGet();
+            }
+        };
+        consumer.setQueueFactory(OffHeapQueue.factory(4096, StringCodec.INSTANCE));
+        Assert.assertTrue(consumer.start());
+        Thread[] producers = new Thread[2];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < 5000; j++) {
+                    try {
+                        consumer.submitSync("task-" + j);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        consumer.terminate().get();
+        Assert.assertEquals(10000, counter.get());
+    }
+
+    /**
+     * 测试按权重限制容量: 权重之和达到上限时提交失败，队列为空时总是接受，归还的额度可以被再次使用.
+     */
+    @Test
+    public void weightBudget() throws ExecutionException, InterruptedException {
+        WeightedQueue<String> queue = new WeightedQueue<>(new SpscBasedQueue<>(1024), String::length, 1000);
+        int accepted = 0;
+        while (queue.offer("0123456789")) {
+            ++accepted;
+        }
+        Assert.assertEquals(100, accepted);
+        Assert.assertEquals(accepted, queue.drain(task -> {}, 1024));
+        Assert.assertEquals(1000, queue.getAvailable());
+        //提交过任务之后退出的线程不会带走任何额度
+        for (int i = 0; i < 8; i++) {
+            Thread producer = new Thread(() -> queue.offer("0123456789"));
+            producer.start();
+            producer.join();
+        }
+        Assert.assertEquals(920, queue.getAvailable());
+        Assert.assertEquals(8, queue.drain(task -> {}, 1024));
+        Assert.assertEquals(1000, queue.getAvailable());
+        //默认的fill在队列已满时比返回值多调用一次supplier，被拒绝的任务不占用额度
+        ArrayQueue<String> bounded = new ArrayQueue<>(4);
+        WeightedQueue<String> small = new WeightedQueue<>(new SQueue<String>() {
+            @Override
+            public boolean offer(String element) {
+                return bounded.offer(element);
+            }
+
+            @Override
+            public String poll() {
+                return bounded.poll();
+            }
+
+            @Override
+            public int size() {
+                return bounded.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return bounded.isEmpty();
+            }
+        }, String::length, 1000);
+        for (int round = 0; round < 5; round++) {
+            Assert.assertEquals(4, small.fill(() -> "0123456789", 10));
+            Assert.assertEquals(960, small.getAvailable());
+            Assert.assertEquals(4, small.drain(task -> {}, 1024));
+            Assert.assertEquals(1000, small.getAvailable());
+        }
+        char[] large = new char[5000];
+        Arrays.fill(large, 'x');
+        Assert.assertTrue(queue.offer(new String(large)));
+        Assert.assertFalse(queue.offer("0123456789"));
+        Assert.assertEquals(5000, queue.poll().length());
+        Assert.assertTrue(queue.offer("0123456789"));
+
+        AtomicLong counter = new AtomicLong();
+        AtomicLong maxBacklog = new AtomicLong();
+        AbstractMPCASConsumer<String> consumer = new AbstractMPCASConsumer<String>(1024, 1) {
+            @Override
+            public void consume(String task) {
+                LockSupport.parkNanos(10000);
+                counter.incrementAndGet();
+            }
+        };
+        consumer.setWeightBudget(1000, String::length);
+        Assert.assertTrue(consumer.start());
+        int rejected = 0;
+        for (int i = 0; i < 500; i++) {
+            if (!consumer.submit("0123456789")) {
+                ++rejected;
+                consumer.submitSync("0123456789");
+            }
+            maxBacklog.accumulateAndGet(consumer.getPendingCount(), Math::max);
+        }
+        consumer.terminate().get();
+        Assert.assertEquals(500, counter.get());
+        Assert.assertTrue(rejected > 0);
+        Assert.assertTrue(maxBacklog.get() <= 100);
+    }
+
+    /**
+     * 测试优先级通道: 严格优先级时高优先级的任务先被取出，加权公平时按权重轮流批量取出，并且可以观测各通道的积压以及延迟.
+     */
+    @Test
+    public void priorityLanes() throws ExecutionException, InterruptedException {
+        PriorityLanesQueue<String> strict = new PriorityLanesQueue<>(spscLanes(2, 16));
+        strict.offer("b1");
+        strict.offer("b2");
+        Assert.assertTrue(strict.lane(0).offer("a1"));
+        Assert.assertEquals(1, strict.getDepth(0));
+        Assert.assertEquals(2, strict.getDepth(1));
+        Assert.assertEquals("a1", strict.poll());
+        Assert.assertEquals("b1", strict.poll());
+
+        PriorityLanesQueue<String> weighted = new PriorityLanesQueue<>(spscLanes(2, 16), new int[]{3, 1});
+        for (int i = 0; i < 10; i++) {
+            weighted.lane(0).offer("a");
+            weighted.lane(1).offer("b");
+        }
+        StringBuilder order = new StringBuilder();
+        Assert.assertEquals(8, weighted.drain(order::append, 8));
+        Assert.assertEquals("aaabaaab", order.toString());
+        Assert.assertEquals(6, weighted.getDequeued(0));
+        Assert.assertTrue(weighted.getLatencyNanos(0) > 0);
+        Assert.assertEquals(12, weighted.size());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+        AbstractMPCASConsumer<String> consumer = new AbstractMPCASConsumer<String>(1024, 1) {
+            @Override
+            public void consume(String task) {
+                if (task.equals("first")) {
+                    started.countDown();
+                    try {
+                        released.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                consumed.add(task);
+            }
+        };
+        consumer.setPriorityLanes(3);
+        Assert.assertTrue(consumer.start());
+        consumer.submit("first");
+        started.await();
+        for (int i = 0; i < 100; i++) {
+            consumer.submit("bulk");
+        }
+        consumer.submitSyncWithPriority("urgent", 0);
+        Assert.assertEquals(100, consumer.getLaneDepth(2));
+        released.countDown();
+        consumer.terminate().get();
+        Assert.assertEquals(102, consumed.size());
+        Assert.assertEquals("urgent", consumed.get(1));
+        Assert.assertEquals(101, consumer.getLaneDequeued(2));
+
+        AtomicLong counter = new AtomicLong();
+        DefaultConsumerPool<String> pool = new DefaultConsumerPool<>(false, 2, 1, 64,
+                () -> message -> counter.incrementAndGet());
+        pool.setPriorityLanes(new int[]{4, 1});
+        Assert.assertTrue(pool.start());
+        for (int i = 0; i < 1000; i++) {
+            pool.submitSyncWithPriority("message " + i, i & 1);
+        }
+        pool.terminate().get();
+        Assert.assertEquals(1000, counter.get());
+    }
+
+    /**
+     * 创建lanes个容量为capacity的单生产者单消费者队列，用作优先级通道.
+     */
+    private static SQueue<String>[] spscLanes(int lanes, int capacity) {
+        @SuppressWarnings("unchecked")
+        SQueue<String>[] queues = (SQueue<String>[]) new SQueue<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            queues[i] = new SpscBasedQueue<>(capacity);
+        }
+        return queues;
+    }
+
+    /**
+     * 测试延迟提交: 任务不会早于到期时间被消费，空闲等待的消费线程按时醒来，被取消的任务不会被消费.
+     */
+    @Test
+    public void delayedSubmit() throws ExecutionException, InterruptedException {
+        TimingWheel<String> wheel = new TimingWheel<>(TimeUnit.MILLISECONDS.toNanos(1), 8);
+        long now = System.nanoTime();
+        wheel.schedule("late", now + TimeUnit.MILLISECONDS.toNanos(20));
+        wheel.schedule("early", now + TimeUnit.MILLISECONDS.toNanos(2));
+        Timeout cancelled = wheel.schedule("cancelled", now + TimeUnit.MILLISECONDS.toNanos(5));
+        Assert.assertTrue(cancelled.cancel());
+        Assert.assertFalse(cancelled.cancel());
+        Assert.assertNull(wheel.poll(now));
+        Assert.assertEquals(2, wheel.size());
+        Assert.assertEquals("early", wheel.poll(now + TimeUnit.MILLISECONDS.toNanos(3)));
+        Assert.assertNull(wheel.poll(now + TimeUnit.MILLISECONDS.toNanos(10)));
+        Assert.assertEquals("late", wheel.poll(now + TimeUnit.MILLISECONDS.toNanos(21)));
+        Assert.assertFalse(wheel.hasPending());
+        Assert.assertEquals(-1, wheel.nanosUntilNext(now));
+
+        List<Long> lateness = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong counter = new AtomicLong();
+        AbstractMPCASConsumer<long[]> consumer = new AbstractMPCASConsumer<long[]>(1024, 1) {
+            @Override
+            public void consume(long[] task) {
+                if (task[1] == 1) {
+                    lateness.add(System.nanoTime() - task[0]);
+                }
+                counter.incrementAndGet();
+            }
+        };
+        //时间轮在启动时创建，启动之前提交延迟任务被拒绝
+        Assert.assertEquals(0, consumer.getScheduledCount());
+        try {
+            consumer.submitDelayed(new long[]{0, 0}, 1, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertTrue(consumer.start());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(30);
+        consumer.submitAt(new long[]{deadline, 1}, deadline);
+        Timeout timeout = consumer.submitDelayed(new long[]{0, 0}, 10, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(timeout.cancel());
+        for (int i = 0; i < 100000; i++) {
+            consumer.submitDelayed(new long[]{0, 0}, i % 50, TimeUnit.MILLISECONDS);
+        }
+        while (lateness.isEmpty() || consumer.getScheduledCount() > 0) {
+            Thread.sleep(10);
+        }
+        consumer.terminate().get();
+        Assert.assertEquals(100001, counter.get());
+        Assert.assertTrue(lateness.get(0) >= 0);
+        Assert.assertFalse(timeout.isExpired());
+
+        AtomicLong consumed = new AtomicLong();
+        DefaultConsumerPool<String> pool = new DefaultConsumerPool<>(false, 2, 1, 64,
+                () -> message -> consumed.incrementAndGet());
+        Assert.assertTrue(pool.start());
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            pool.submitDelayed("message " + i, 20, TimeUnit.MILLISECONDS);
+        }
+        while (consumed.get() < 10) {
+            Thread.sleep(1);
+        }
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        pool.terminate().get();
+    }
+
+    /**
+     * 测试截止时间: EdfQueue按截止时间取出任务，过期的任务被跳过并交给expiryHandler，微批次模式下同样如此.
+     */
+    @Test
+    public void deadlines() throws ExecutionException, InterruptedException {
+        class Job implements Deadlined {
+            final String name;
+            final long deadline;
+
+            Job(String name, long deadline) {
+                this.name = name;
+                this.deadline = deadline;
+            }
+
+            @Override
+            public long getDeadline() {
+                return deadline;
+            }
+        }
+        final long now = System.nanoTime();
+        final long second = TimeUnit.SECONDS.toNanos(1);
+        EdfQueue<Object> edf = new EdfQueue<>(4);
+        Assert.assertTrue(edf.offer("plain"));
+        Assert.assertTrue(edf.offer(new Job("later", now + 2 * second)));
+        Assert.assertTrue(edf.offer(new Job("sooner", now + second)));
+        Assert.assertTrue(edf.offer("plain2"));
+        Assert.assertFalse(edf.offer("overflow"));
+        Assert.assertEquals("sooner", ((Job) edf.poll()).name);
+        Assert.assertEquals("later", ((Job) edf.poll()).name);
+        Assert.assertEquals("plain", edf.poll());
+        Assert.assertEquals("plain2", edf.poll());
+        Assert.assertNull(edf.poll());
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+        List<String> expired = Collections.synchronizedList(new ArrayList<>());
+        AbstractMPCASConsumer<Job> consumer = new AbstractMPCASConsumer<Job>(1024, 1) {
+            @Override
+            public void consume(Job task) {
+                if (task.name.equals("first")) {
+                    started.countDown();
+                    try {
+                        released.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                consumed.add(task.name);
+            }
+        };
+        consumer.setQueueFactory(EdfQueue.factory());
+        consumer.setExpiryHandler(task -> expired.add(task.name));
+        Assert.assertTrue(consumer.start());
+        consumer.submit(new Job("first", now + 60 * second));
+        started.await();
+        for (int i = 0; i < 10; i++) {
+            consumer.submit(new Job("live" + i, System.nanoTime() + (20 - i) * second));
+            consumer.submit(new Job("stale" + i, System.nanoTime() - second));
+        }
+        released.countDown();
+        consumer.terminate().get();
+        Assert.assertEquals(10, consumer.getExpiredCount());
+        Assert.assertEquals(10, expired.size());
+        Assert.assertEquals(11, consumed.size());
+        Assert.assertEquals("live9", consumed.get(1));
+        Assert.assertEquals("live0", consumed.get(10));
+
+        AtomicLong batched = new AtomicLong();
+        AbstractMPCASConsumer<Job> micro = new AbstractMPCASConsumer<Job>(1024, 1) {
+            @Override
+            public void consume(Job task) {
+                batched.incrementAndGet();
+            }
+        };
+        micro.setMicroBatch(16, 5, TimeUnit.MILLISECONDS);
+        micro.setExpiryHandler(task -> {});
+        Assert.assertTrue(micro.start());
+        for (int i = 0; i < 100; i++) {
+            micro.submitSync(new Job("job" + i, System.nanoTime() + ((i & 1) == 0 ? -second : second)));
+        }
+        micro.terminate().get();
+        Assert.assertEquals(50, batched.get());
+        Assert.assertEquals(50, micro.getExpiredCount());
+    }
+
+    /**
+     * 测试接口的默认实现: 只实现了offer/poll的队列以及只实现了submit/retry的RetryStrategy同样支持批量操作以及限时等待.
+     */
+    @Test
+    public void defaultBatchMethods() throws InterruptedException {
+        SQueue<Integer> queue = new SQueue<Integer>() {
+            private final ArrayDeque<Integer> deque = new ArrayDeque<>();
+
+            @Override
+            public boolean offer(Integer element) {
+                return deque.size() < 4 && deque.offer(element);
+            }
+
+            @Override
+            public Integer poll() {
+                return deque.poll();
+            }
+
+            @Override
+            public int size() {
+                return deque.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return deque.isEmpty();
+            }
+        };
+        Integer[] tasks = {0, 1, 2, 3, 4, 5};
+        Assert.assertEquals(3, queue.fill(RangeSupplier.of(tasks, 0, 3), 3));
+        RetryStrategy<Integer> strategy = new RetryStrategy<Integer>() {
+            @Override
+            public Integer retry(SQueue<Integer> queue) {
+                return queue.poll();
+            }
+
+            @Override
+            public boolean submit(SQueue<Integer> queue, Integer task) {
+                return queue.offer(task);
+            }
+
+            @Override
+            public void release() {
+            }
+
+            @Override
+            public RetryStrategy<Integer> copy() {
+                return this;
+            }
+        };
+        //只剩一个空位，返回值以实际添加的数量为准
+        Assert.assertEquals(1, strategy.submitAll(queue, RangeSupplier.of(tasks, 3, 6), 3));
+        List<Integer> drained = new ArrayList<>();
+        Assert.assertEquals(3, queue.drain(drained::add, 3));
+        Assert.assertEquals(Arrays.asList(0, 1, 2), drained);
+        Assert.assertEquals(1, queue.drain(drained::add, 3));
+        Assert.assertEquals(Integer.valueOf(3), drained.get(3));
+        Assert.assertEquals(0, queue.drain(drained::add, 3));
+        long start = System.nanoTime();
+        Assert.assertNull(strategy.retry(queue, TimeUnit.MILLISECONDS.toNanos(5)));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(5));
+        Assert.assertNull(strategy.retry(queue, 0));
+        queue.offer(9);
+        Assert.assertEquals(Integer.valueOf(9), strategy.retry(queue, TimeUnit.SECONDS.toNanos(1)));
+
+        //Submitable的默认批量提交在第一个被拒绝的任务处停止
+        List<Integer> accepted = new ArrayList<>();
+        Submitable<Integer> submitable = new Submitable<Integer>() {
+            @Override
+            public boolean submit(Integer task) {
+                return accepted.size() < 4 && accepted.add(task);
+            }
+
+            @Override
+            public void submitSync(Integer task) {
+                accepted.add(task);
+            }
+        };
+        Assert.assertEquals(3, submitable.submitAll(tasks, 1, 4));
+        Assert.assertEquals(1, submitable.submitAll(Arrays.asList(tasks), 4, 6));
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), accepted);
+        try {
+            submitable.submitAll(tasks, 2, 7);
+            Assert.fail();
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    /**
+     * 测试自适应重试策略: 依次经过自旋、yield以及park阶段，并按各阶段的成功率调整次数，各阶段的计数可被观测.
+     */
+    @Test
+    public void adaptiveStrategy() throws InterruptedException {
+        //第18次poll才有任务: 第1次直接poll，之后的16次自旋都失败，yield阶段成功
+        AtomicLong polls = new AtomicLong();
+        SQueue<Integer> delayed = new SQueue<Integer>() {
+            @Override
+            public boolean offer(Integer element) {
+                return false;
+            }
+
+            @Override
+            public Integer poll() {
+                return (polls.incrementAndGet() % 18 == 0 ? 1 : null);
+            }
+
+            @Override
+            public int size() {
+                return 0;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return true;
+            }
+        };
+        AdaptiveStrategy<Integer> strategy = new AdaptiveStrategy<>();
+        Assert.assertEquals(Integer.valueOf(1), strategy.retry(delayed));
+        Assert.assertEquals(0, strategy.getSpinHits());
+        Assert.assertEquals(1, strategy.getYieldHits());
+        Assert.assertEquals(0, strategy.getParks());
+
+        //每8次poll就有任务，自旋总能成功，所以自旋次数增加
+        AtomicLong frequentPolls = new AtomicLong();
+        SQueue<Integer> frequent = new SQueue<Integer>() {
+            @Override
+            public boolean offer(Integer element) {
+                return false;
+            }
+
+            @Override
+            public Integer poll() {
+                return (frequentPolls.incrementAndGet() % 8 == 0 ? 1 : null);
+            }
+
+            @Override
+            public int size() {
+                return 0;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return true;
+            }
+        };
+        strategy = new AdaptiveStrategy<>();
+        for (int i = 0; i < 30; i++) {
+            Assert.assertEquals(Integer.valueOf(1), strategy.retry(frequent));
+        }
+        Assert.assertEquals(30, strategy.getSpinHits());
+        Assert.assertTrue(strategy.getSpinBudget() > AdaptiveStrategy.MIN_SPIN);
+
+        //队列一直为空时自旋以及yield都失败，进入park阶段，yield次数减少
+        SpscBasedQueue<Integer> queue = new SpscBasedQueue<>(16);
+        strategy = new AdaptiveStrategy<>();
+        final int initialYield = strategy.getYieldBudget();
+        for (int i = 0; i < 20; i++) {
+            Assert.assertNull(strategy.retry(queue, 100000));
+        }
+        Assert.assertEquals(20, strategy.getParks());
+        Assert.assertEquals(0, strategy.getSpinHits() + strategy.getYieldHits());
+        Assert.assertEquals(AdaptiveStrategy.MIN_SPIN, strategy.getSpinBudget());
+        Assert.assertTrue(strategy.getYieldBudget() < initialYield);
+
+        //park阶段被提交唤醒
+        final AdaptiveStrategy<Integer> parked = strategy;
+        Thread producer = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            parked.submit(queue, 7);
+        });
+        producer.start();
+        Integer task;
+        while ((task = parked.retry(queue)) == null) ;
+        producer.join();
+        Assert.assertEquals(Integer.valueOf(7), task);
+        Assert.assertTrue(parked.getParks() > 20);
+    }
+
+    /**
+     * 测试等待者栈: 多个线程反复限时等待并超时取消，栈的大小保持有界.
+     */
+    @Test
+    public void waiterStackBounded() throws InterruptedException {
+        WaiterStack stack = new WaiterStack();
+        AtomicLong rounds = new AtomicLong();
+        Thread[] waiters = new Thread[2];
+        for (int t = 0; t < waiters.length; t++) {
+            waiters[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    WaiterStack.Waiter waiter = stack.push();
+                    LockSupport.parkNanos(1000);
+                    stack.cancel(waiter);
+                    rounds.incrementAndGet();
+                }
+            });
+            waiters[t].start();
+        }
+        int max = 0;
+        while (waiters[0].isAlive() || waiters[1].isAlive()) {
+            max = Math.max(max, stack.size());
+            Thread.yield();
+        }
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+        Assert.assertEquals(40000, rounds.get());
+        Assert.assertTrue("max size " + max, max <= 4);
+        Assert.assertEquals(0, stack.size());
+    }
+
+    /**
+     * 测试窃取到单生产者消费者: 单生产者消费者的消费线程从多生产者消费者处窃取任务，同时其生产者仍在提交，
+     * 窃取到的任务不能经由其自己的队列，否则队列出现两个生产者，任务丢失或者重复.
+     */
+    @Test
+    public void stealIntoSingleProducer() throws ExecutionException, InterruptedException {
+        final int total = 2000;
+        AtomicIntegerArray seen = new AtomicIntegerArray(total * 2);
+        Set<String> mpThreads = ConcurrentHashMap.newKeySet();
+        DefaultConsumerPool<int[]> pool = new DefaultConsumerPool<>(true, 2, 1, 64, () -> message -> {
+            seen.incrementAndGet(message[0] * total + message[1]);
+            if (message[0] == 1) {
+                mpThreads.add(Thread.currentThread().getName());
+                LockSupport.parkNanos(50000);
+            }
+        });
+        pool.setWorkStealing(1, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.start());
+        Consumer<int[]> sp = pool.acquire();
+        Consumer<int[]> mp = pool.acquire();
+        Assert.assertNotSame(sp, mp);
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < total; i++) {
+                    mp.submitSync(new int[]{1, i});
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < total; i++) {
+            sp.submitSync(new int[]{0, i});
+            if ((i & 15) == 0) {
+                LockSupport.parkNanos(100000);
+            }
+        }
+        producer.join();
+        pool.terminate().get();
+        for (int i = 0; i < total * 2; i++) {
+            Assert.assertEquals("task " + i, 1, seen.get(i));
+        }
+        Assert.assertEquals(2, mpThreads.size());
+    }
+
+    /**
+     * 测试队列模式的冲突: 不能同时使用的模式(包括预写日志与自定义队列)在setter中即被拒绝，消费者以及池仍可正常启动.
+     */
+    @Test
+    public void modeConflicts() throws ExecutionException, InterruptedException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "conflicts");
+        AbstractSPCASConsumer<String> consumer = new AbstractSPCASConsumer<String>(16, 1) {
+            @Override
+            public void consume(String task) {
+            }
+        };
+        consumer.setPriorityLanes(2);
+        try {
+            consumer.setWorkStealing(1, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        try {
+            consumer.setJournal(directory, 4096, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertTrue(consumer.start());
+        consumer.terminate().get();
+
+        //预写日志的内部队列存放日志条目，不能使用自定义的队列
+        AbstractSPCASConsumer<String> journaled = new AbstractSPCASConsumer<String>(16, 1) {
+            @Override
+            public void consume(String task) {
+            }
+        };
+        journaled.setJournal(directory, 4096, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096);
+        try {
+            journaled.setQueueFactory(EdfQueue.factory());
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        AbstractSPCASConsumer<String> factored = new AbstractSPCASConsumer<String>(16, 1) {
+            @Override
+            public void consume(String task) {
+            }
+        };
+        factored.setQueueFactory(EdfQueue.factory());
+        try {
+            factored.setJournal(directory, 4096, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+
+        DefaultConsumerPool<String> pool = new DefaultConsumerPool<>(false, 2, 1, 16, () -> task -> {
+        });
+        pool.setSpill(directory, 4096, StringCodec.INSTANCE);
+        try {
+            pool.setPriorityLanes(2);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        try {
+            pool.setJournal(directory, 4096, StringCodec.INSTANCE, 10, TimeUnit.MILLISECONDS, 4096);
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+        Assert.assertEquals(LifeCycle.State.INIT, pool.getState());
+        Assert.assertTrue(pool.start());
+        pool.terminate().get();
+    }
+
+    /**
+     * 测试工作窃取: 全部任务提交给同一个消费者，另一个消费者也应参与消费，而按key提交的任务仍保持顺序.
+     */
+    @Test
+    public void workStealing() throws ExecutionException, InterruptedException {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicLong counter = new AtomicLong();
+        AtomicLong disorder = new AtomicLong();
+        ConcurrentMap<Integer, Integer> last = new ConcurrentHashMap<>();
+        DefaultConsumerPool<int[]> pool = new DefaultConsumerPool<>(false, 2, 1, 256, () -> message -> {
+            threads.add(Thread.currentThread().getName());
+            counter.incrementAndGet();
+            if (message[0] >= 0) {
+                Integer previous = last.put(message[0], message[1]);
+                if (previous != null && previous >= message[1]) {
+                    disorder.incrementAndGet();
+                }
+            }
+            LockSupport.parkNanos(100000);
+        });
+        pool.setWorkStealing(1, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.start());
+        Consumer<int[]> consumer = pool.acquire();
+        for (int i = 0; i < 200; i++) {
+            consumer.submitSync(new int[]{-1, i});
+            pool.submitSync(i & 3, new int[]{i & 3, i});
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (counter.get() < 400 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        pool.terminate().get();
+        Assert.assertEquals(400, counter.get());
+        Assert.assertEquals(0, disorder.get());
+        Assert.assertEquals(2, threads.size());
+    }
+
 }
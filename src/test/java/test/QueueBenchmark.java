@@ -0,0 +1,62 @@
+package test;
+
+import consumer.queue.SQueue;
+import consumer.queue.cas.CASQueue;
+import consumer.queue.cas.MpmcBasedQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比{@link CASQueue}与{@link MpmcBasedQueue}(jctools)在生产者与消费者并发时的吞吐量，
+ * 每组包含2个生产者线程和2个消费者线程，offer/poll失败时直接返回，不计入成功的操作.
+ * <p>运行: main方法.</p>
+ *
+ * @author skywalker
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+
+    @Param({"cas", "jctools"})
+    public String type;
+
+    private SQueue<Integer> queue;
+
+    @Setup
+    public void setup() {
+        queue = ("cas".equals(type) ? new CASQueue<>(1024) : new MpmcBasedQueue<>(1024));
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(2)
+    public boolean offer() {
+        return queue.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(2)
+    public Integer poll() {
+        return queue.poll();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(QueueBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,81 @@
+package test;
+
+import consumer.cas.AbstractMPCASConsumer;
+import consumer.ring.RingBufferConsumer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比{@link RingBufferConsumer}(申请-修改-发布)与{@link AbstractMPCASConsumer}(每个任务创建新对象)的吞吐量
+ * 以及每次操作的分配量.
+ * <p>运行: main方法，开启了GC profiler，ring的gc.alloc.rate.norm应接近0.</p>
+ *
+ * @author skywalker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RingBufferBenchmark {
+
+    /**
+     * 可变的事件/任务.
+     */
+    public static final class Event {
+        long value;
+    }
+
+    private RingBufferConsumer<Event> ring;
+    private AbstractMPCASConsumer<Event> queue;
+    private long sink;
+
+    @Setup
+    public void setup() {
+        ring = new RingBufferConsumer<>(1024, Event::new, (event, sequence) -> sink += event.value);
+        ring.start();
+        queue = new AbstractMPCASConsumer<Event>(1024, 1) {
+            @Override
+            public void consume(Event task) {
+                sink += task.value;
+            }
+        };
+        queue.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ring.terminate().get();
+        queue.terminate().get();
+    }
+
+    @Benchmark
+    public void ring() {
+        long sequence = ring.claim();
+        ring.get(sequence).value = sequence;
+        ring.publish(sequence);
+    }
+
+    @Benchmark
+    public void queue() throws InterruptedException {
+        Event event = new Event();
+        event.value = 1;
+        queue.submitSync(event);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RingBufferBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(options).run();
+    }
+
+}
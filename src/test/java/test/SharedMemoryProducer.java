@@ -0,0 +1,29 @@
+package test;
+
+import consumer.codec.StringCodec;
+import consumer.queue.offheap.SharedMemoryQueue;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 在独立的进程中向{@link SharedMemoryQueue}写入任务，供{@link LogicTest#sharedMemoryQueue()}使用.
+ * <p>参数: 队列文件 起始序号(包含) 结束序号(不包含)</p>
+ *
+ * @author skywalker
+ */
+public class SharedMemoryProducer {
+
+    public static void main(String[] args) throws IOException {
+        int from = Integer.parseInt(args[1]);
+        int to = Integer.parseInt(args[2]);
+        try (SharedMemoryQueue<String> queue = SharedMemoryQueue.open(new File(args[0]), StringCodec.INSTANCE)) {
+            for (int i = from; i < to; i++) {
+                while (!queue.offer("task-" + i)) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+}
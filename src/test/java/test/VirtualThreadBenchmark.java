@@ -0,0 +1,75 @@
+package test;
+
+import consumer.Consumer;
+import consumer.pool.DefaultConsumerPool;
+import consumer.util.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 对比平台线程与虚拟线程模式下，I/O密集型消费逻辑(以parkNanos模拟)的吞吐量、CPU(载体线程)利用率以及平台线程数.
+ * <p>利用率 = 进程CPU时间 / (耗时 * 处理器数)，虚拟线程模式需在JDK 21+上运行，否则跳过.</p>
+ * <p>运行: main方法，参数依次为消费者数、每个消费者的线程数、任务数、每个任务的阻塞时间(微秒).</p>
+ *
+ * @author skywalker
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int consumers = (args.length > 0 ? Integer.parseInt(args[0]) : 64);
+        int threads = (args.length > 1 ? Integer.parseInt(args[1]) : 16);
+        int tasks = (args.length > 2 ? Integer.parseInt(args[2]) : 200000);
+        long blockMicros = (args.length > 3 ? Long.parseLong(args[3]) : 100);
+        run(false, consumers, threads, tasks, blockMicros);
+        if (VirtualThreads.isSupported()) {
+            run(true, consumers, threads, tasks, blockMicros);
+        } else {
+            System.out.println("virtual: skipped, requires JDK 21 or later.");
+        }
+    }
+
+    private static void run(boolean virtual, int consumers, int threads, int tasks, long blockMicros)
+            throws Exception {
+        final CountDownLatch latch = new CountDownLatch(tasks);
+        final long blockNanos = TimeUnit.MICROSECONDS.toNanos(blockMicros);
+        DefaultConsumerPool<Integer> pool = new DefaultConsumerPool<>(false, consumers, threads, 1024, () -> task -> {
+            LockSupport.parkNanos(blockNanos);
+            latch.countDown();
+        });
+        pool.setVirtualThreads(virtual);
+        pool.start();
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        long cpuStart = processCpuTime(osBean);
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            Consumer<Integer> consumer = pool.acquire();
+            consumer.submitSync(i);
+            pool.release(consumer);
+        }
+        latch.await();
+        long elapsed = System.nanoTime() - start;
+        long cpu = processCpuTime(osBean) - cpuStart;
+        int platformThreads = threadBean.getThreadCount();
+        pool.terminate().get();
+
+        double utilization = (cpu < 0 ? Double.NaN :
+                (double) cpu / elapsed / Runtime.getRuntime().availableProcessors());
+        System.out.printf("%s: %.0f tasks/s, carrier utilization %.1f%%, platform threads %d%n",
+                (virtual ? "virtual" : "platform"), tasks * 1e9 / elapsed, utilization * 100, platformThreads);
+    }
+
+    private static long processCpuTime(OperatingSystemMXBean bean) {
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+}